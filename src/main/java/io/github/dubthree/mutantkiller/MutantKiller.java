@@ -1,6 +1,7 @@
 package io.github.dubthree.mutantkiller;
 
 import io.github.dubthree.mutantkiller.cli.AnalyzeCommand;
+import io.github.dubthree.mutantkiller.cli.DiffCommand;
 import io.github.dubthree.mutantkiller.cli.KillCommand;
 import io.github.dubthree.mutantkiller.cli.RunCommand;
 import picocli.CommandLine;
@@ -18,6 +19,7 @@ import picocli.CommandLine.Command;
     subcommands = {
         RunCommand.class,
         AnalyzeCommand.class,
+        DiffCommand.class,
         KillCommand.class
     }
 )
@@ -0,0 +1,320 @@
+package io.github.dubthree.mutantkiller.analysis;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.NodeList;
+import com.github.javaparser.ast.body.CallableDeclaration;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.InitializerDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.expr.LambdaExpr;
+import com.github.javaparser.ast.nodeTypes.NodeWithTypeParameters;
+import com.github.javaparser.ast.type.ArrayType;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import com.github.javaparser.ast.type.Type;
+import com.github.javaparser.ast.type.TypeParameter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Interval tree over the line ranges of every callable in a source file: methods, constructors,
+ * static and instance initializers (including field initializers) and lambda bodies.
+ *
+ * <p>PIT identifies a mutant by line, JVM method name and descriptor. The tree finds the
+ * callables spanning a line in O(log n + k), and the name and descriptor pick the right one
+ * among overloads and nested declarations.
+ */
+public final class CallableIndex {
+
+    /**
+     * What kind of code a callable is, which determines its JVM method name.
+     */
+    public enum Kind {
+        METHOD, CONSTRUCTOR, STATIC_INITIALIZER, INSTANCE_INITIALIZER, LAMBDA
+    }
+
+    /**
+     * A callable declaration and the lines it spans.
+     *
+     * @param parameterTypes erased simple names of the declared parameters; "*" for a type variable
+     */
+    public record Callable(Kind kind, String name, List<String> parameterTypes, int beginLine, int endLine, Node node) {
+
+        /**
+         * The name PIT reports for this callable.
+         */
+        public String jvmName() {
+            return switch (kind) {
+                case METHOD -> name;
+                case CONSTRUCTOR, INSTANCE_INITIALIZER -> "<init>";
+                case STATIC_INITIALIZER -> "<clinit>";
+                case LAMBDA -> "lambda$";
+            };
+        }
+
+        int span() {
+            return endLine - beginLine;
+        }
+    }
+
+    private static final String TYPE_VARIABLE = "*";
+
+    /** Sorted by begin line; the tree is implicit, rooted at the middle of each sub-range. */
+    private final Callable[] callables;
+    private final int[] maxEnd;
+
+    private CallableIndex(List<Callable> callables) {
+        this.callables = callables.toArray(new Callable[0]);
+        Arrays.sort(this.callables, Comparator.comparingInt(Callable::beginLine));
+        this.maxEnd = new int[this.callables.length];
+        buildMaxEnd(0, this.callables.length);
+    }
+
+    /**
+     * Index every callable in a compilation unit.
+     */
+    public static CallableIndex of(CompilationUnit cu) {
+        List<Callable> callables = new ArrayList<>();
+        for (MethodDeclaration method : cu.findAll(MethodDeclaration.class)) {
+            add(callables, Kind.METHOD, method.getNameAsString(), parameterTypes(method), method);
+        }
+        for (ConstructorDeclaration constructor : cu.findAll(ConstructorDeclaration.class)) {
+            add(callables, Kind.CONSTRUCTOR, constructor.getNameAsString(), parameterTypes(constructor), constructor);
+        }
+        for (InitializerDeclaration initializer : cu.findAll(InitializerDeclaration.class)) {
+            add(callables, initializer.isStatic() ? Kind.STATIC_INITIALIZER : Kind.INSTANCE_INITIALIZER,
+                "", List.of(), initializer);
+        }
+        for (FieldDeclaration field : cu.findAll(FieldDeclaration.class)) {
+            // Field initializers are compiled into <clinit> or every constructor
+            if (field.getVariables().stream().anyMatch(variable -> variable.getInitializer().isPresent())) {
+                boolean isStatic = field.isStatic() || field.getParentNode()
+                    .filter(parent -> parent instanceof ClassOrInterfaceDeclaration type
+                        && type.isInterface())
+                    .isPresent();
+                add(callables, isStatic ? Kind.STATIC_INITIALIZER : Kind.INSTANCE_INITIALIZER, "", List.of(), field);
+            }
+        }
+        for (LambdaExpr lambda : cu.findAll(LambdaExpr.class)) {
+            add(callables, Kind.LAMBDA, "", List.of(), lambda);
+        }
+        return new CallableIndex(callables);
+    }
+
+    /**
+     * All callables whose range contains the line, outermost first.
+     */
+    public List<Callable> containing(int line) {
+        List<Callable> result = new ArrayList<>();
+        query(0, callables.length, line, result);
+        result.sort(Comparator.comparingInt(Callable::span).reversed());
+        return result;
+    }
+
+    /**
+     * The callable holding a mutation reported by PIT.
+     *
+     * <p>Among the callables spanning the line, the innermost one with the right JVM name and a
+     * matching descriptor wins. Synthetic lambda methods ({@code lambda$foo$0}) resolve to the
+     * innermost lambda. If PIT's line is outside every matching range (e.g. a field initializer
+     * attributed to a constructor), the name and descriptor alone are used.
+     */
+    public Optional<Callable> resolve(String methodName, String descriptor, int line) {
+        List<Callable> spanning = containing(line);
+        boolean lambda = methodName != null && methodName.startsWith("lambda$");
+        List<String> descriptorTypes = descriptor != null ? descriptorTypes(descriptor) : null;
+
+        Callable nameMatch = null;
+        for (int i = spanning.size() - 1; i >= 0; i--) {
+            Callable callable = spanning.get(i);
+            if (lambda ? callable.kind() != Kind.LAMBDA : !callable.jvmName().equals(methodName)) {
+                continue;
+            }
+            if (lambda || matches(callable, descriptorTypes)) {
+                return Optional.of(callable);
+            }
+            if (nameMatch == null) {
+                nameMatch = callable;
+            }
+        }
+        if (nameMatch != null) {
+            return Optional.of(nameMatch);
+        }
+        if (lambda) {
+            return Optional.empty();
+        }
+
+        // Not on the reported line: fall back to name and descriptor
+        Callable anyLine = null;
+        for (Callable callable : callables) {
+            if (callable.jvmName().equals(methodName) && callable.kind() != Kind.INSTANCE_INITIALIZER
+                && callable.kind() != Kind.STATIC_INITIALIZER) {
+                if (matches(callable, descriptorTypes)) {
+                    return Optional.of(callable);
+                }
+                if (anyLine == null) {
+                    anyLine = callable;
+                }
+            }
+        }
+        return Optional.ofNullable(anyLine);
+    }
+
+    public int size() {
+        return callables.length;
+    }
+
+    private int buildMaxEnd(int from, int to) {
+        if (from >= to) {
+            return Integer.MIN_VALUE;
+        }
+        int mid = (from + to) >>> 1;
+        int max = Math.max(callables[mid].endLine(), Math.max(buildMaxEnd(from, mid), buildMaxEnd(mid + 1, to)));
+        maxEnd[mid] = max;
+        return max;
+    }
+
+    private void query(int from, int to, int line, List<Callable> result) {
+        if (from >= to) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        if (maxEnd[mid] < line) {
+            // Nothing in this subtree reaches the line
+            return;
+        }
+        query(from, mid, line, result);
+        Callable callable = callables[mid];
+        if (callable.beginLine() <= line) {
+            if (callable.endLine() >= line) {
+                result.add(callable);
+            }
+            query(mid + 1, to, line, result);
+        }
+    }
+
+    private static void add(List<Callable> callables, Kind kind, String name, List<String> parameterTypes, Node node) {
+        if (node.getBegin().isPresent() && node.getEnd().isPresent()) {
+            callables.add(new Callable(kind, name, parameterTypes,
+                node.getBegin().get().line, node.getEnd().get().line, node));
+        }
+    }
+
+    /**
+     * Whether the declared parameters match a descriptor. Constructors may have synthetic leading
+     * parameters (the outer instance of an inner class, the name and ordinal of an enum constant).
+     */
+    private static boolean matches(Callable callable, List<String> descriptorTypes) {
+        if (descriptorTypes == null) {
+            return true;
+        }
+        List<String> declared = callable.parameterTypes();
+        int offset = descriptorTypes.size() - declared.size();
+        if (offset < 0 || (offset > 0 && callable.kind() != Kind.CONSTRUCTOR)) {
+            return false;
+        }
+        for (int i = 0; i < declared.size(); i++) {
+            String expected = declared.get(i);
+            String actual = descriptorTypes.get(offset + i);
+            if (expected.equals(TYPE_VARIABLE) ? isPrimitive(actual) : !expected.equals(actual)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<String> parameterTypes(CallableDeclaration<?> callable) {
+        Set<String> typeVariables = new HashSet<>();
+        Node node = callable;
+        while (node != null) {
+            if (node instanceof NodeWithTypeParameters<?> generic) {
+                for (TypeParameter parameter : generic.getTypeParameters()) {
+                    typeVariables.add(parameter.getNameAsString());
+                }
+            }
+            node = node.getParentNode().orElse(null);
+        }
+
+        NodeList<Parameter> parameters = callable.getParameters();
+        List<String> types = new ArrayList<>(parameters.size());
+        for (Parameter parameter : parameters) {
+            String type = erasure(parameter.getType(), typeVariables);
+            types.add(parameter.isVarArgs() ? type + "[]" : type);
+        }
+        return types;
+    }
+
+    /**
+     * Simple name of a source type after erasure; type variables become "*" unless they are arrays.
+     */
+    private static String erasure(Type type, Set<String> typeVariables) {
+        if (type instanceof ArrayType array) {
+            String component = erasure(array.getComponentType(), typeVariables);
+            return (component.equals(TYPE_VARIABLE) ? "Object" : component) + "[]";
+        }
+        if (type instanceof ClassOrInterfaceType classType) {
+            String name = classType.getNameAsString();
+            return typeVariables.contains(name) && classType.getScope().isEmpty() ? TYPE_VARIABLE : name;
+        }
+        return type.asString();
+    }
+
+    /**
+     * Simple parameter type names of a JVM method descriptor, e.g. {@code (Ljava/util/Map$Entry;[I)V}
+     * gives {@code [Entry, int[]]}.
+     */
+    static List<String> descriptorTypes(String descriptor) {
+        List<String> types = new ArrayList<>();
+        int i = descriptor.indexOf('(') + 1;
+        int end = descriptor.indexOf(')');
+        if (i <= 0 || end < i) {
+            return types;
+        }
+        while (i < end) {
+            int dimensions = 0;
+            while (descriptor.charAt(i) == '[') {
+                dimensions++;
+                i++;
+            }
+            String type;
+            char c = descriptor.charAt(i);
+            if (c == 'L') {
+                int semicolon = descriptor.indexOf(';', i);
+                String binaryName = descriptor.substring(i + 1, semicolon);
+                type = binaryName.substring(Math.max(binaryName.lastIndexOf('/'), binaryName.lastIndexOf('$')) + 1);
+                i = semicolon + 1;
+            } else {
+                type = switch (c) {
+                    case 'Z' -> "boolean";
+                    case 'B' -> "byte";
+                    case 'C' -> "char";
+                    case 'S' -> "short";
+                    case 'I' -> "int";
+                    case 'J' -> "long";
+                    case 'F' -> "float";
+                    case 'D' -> "double";
+                    default -> String.valueOf(c);
+                };
+                i++;
+            }
+            types.add(type + "[]".repeat(dimensions));
+        }
+        return types;
+    }
+
+    private static boolean isPrimitive(String type) {
+        return switch (type) {
+            case "boolean", "byte", "char", "short", "int", "long", "float", "double" -> true;
+            default -> false;
+        };
+    }
+}
@@ -0,0 +1,255 @@
+package io.github.dubthree.mutantkiller.analysis;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.CallableDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.FieldAccessExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.MethodReferenceExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.resolution.declarations.ResolvedDeclaration;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Collects the declarations a mutated method depends on, so the prompt can show them
+ * instead of the whole class.
+ *
+ * <p>Starting from the mutated member, every method call, constructor call, method reference and
+ * field access is resolved with the symbol solver. Fields and helpers of the same class are
+ * included in full and followed transitively; members of other classes contribute only their
+ * signatures. Declarations closer to the mutated member come first, and the slice stops growing
+ * once the token budget (estimated at four characters per token) is used up.
+ *
+ * <p>The symbol solver parses the source roots as it resolves, and caches what it parsed. The
+ * slicer therefore keeps one parser, and with it one type solver, for its whole life, and each
+ * source file is parsed for resolution once. Mutants in the same member share one slice.
+ * Slicing is serialized, because type solvers are not thread-safe; the lock is a
+ * {@link ReentrantLock}, so it does not pin virtual threads.
+ */
+public final class ContextSlicer {
+
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int MAX_DEPTH = 3;
+
+    private final JavaParser parser;
+    private final ReentrantLock lock = new ReentrantLock();
+    /** Per source file, weakly so that entries go when the source cache drops the file. */
+    private final Map<SourceCache.ParsedSource, Resolved> resolved = new WeakHashMap<>();
+
+    /**
+     * @param parsers a pool with symbol solving over the project's source roots
+     */
+    public ContextSlicer(JavaParserPool parsers) {
+        if (!parsers.symbolSolving()) {
+            throw new IllegalArgumentException("Context slicing needs a parser pool with symbol solving");
+        }
+        this.parser = parsers.newParser();
+    }
+
+    /**
+     * A source file parsed for resolution, or null if it does not parse, with the slices taken from it.
+     */
+    private record Resolved(CompilationUnit cu, Map<SliceKey, String> slices) {
+    }
+
+    private record SliceKey(int beginLine, int endLine, int tokenBudget) {
+    }
+
+    /**
+     * The declarations the member spanning {@code beginLine..endLine} depends on, grouped by
+     * declaring type, or an empty string if there are none or the source does not resolve.
+     */
+    public String slice(SourceCache.ParsedSource source, int beginLine, int endLine, int tokenBudget) {
+        lock.lock();
+        try {
+            Resolved file = resolved.computeIfAbsent(source, key -> new Resolved(
+                parser.parse(key.text()).getResult().orElse(null), new HashMap<>()));
+            if (file.cu() == null) {
+                return "";
+            }
+            return file.slices().computeIfAbsent(new SliceKey(beginLine, endLine, tokenBudget),
+                key -> slice(file.cu(), source, beginLine, endLine, tokenBudget));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private String slice(CompilationUnit cu, SourceCache.ParsedSource source, int beginLine, int endLine, int tokenBudget) {
+        Optional<BodyDeclaration<?>> root = cu.findFirst(BodyDeclaration.class, declaration ->
+            declaration.getRange().filter(range -> range.begin.line == beginLine && range.end.line == endLine).isPresent())
+            .map(declaration -> (BodyDeclaration<?>) declaration);
+        if (root.isEmpty()) {
+            return "";
+        }
+
+        Set<Node> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        seen.add(root.get());
+        List<Dependency> dependencies = new ArrayList<>();
+        Deque<Node> queue = new ArrayDeque<>();
+        Map<Node, Integer> depths = new IdentityHashMap<>();
+        queue.add(root.get());
+        depths.put(root.get(), 0);
+
+        while (!queue.isEmpty()) {
+            Node current = queue.poll();
+            int depth = depths.get(current);
+            for (Node target : references(current)) {
+                if (!seen.add(target)) {
+                    continue;
+                }
+                boolean local = target.findCompilationUnit().filter(unit -> unit == cu).isPresent();
+                String text = local ? fullText(target, source) : signature(target);
+                dependencies.add(new Dependency(ownerName(target), text));
+                if (local && target instanceof CallableDeclaration<?> && depth + 1 < MAX_DEPTH) {
+                    queue.add(target);
+                    depths.put(target, depth + 1);
+                }
+            }
+        }
+        return render(dependencies, tokenBudget);
+    }
+
+    /**
+     * The field, method and constructor declarations a member refers to.
+     */
+    private List<Node> references(Node member) {
+        List<Node> targets = new ArrayList<>();
+        for (Expression expression : member.findAll(Expression.class)) {
+            if (!(expression instanceof MethodCallExpr || expression instanceof ObjectCreationExpr
+                || expression instanceof MethodReferenceExpr || expression instanceof NameExpr
+                || expression instanceof FieldAccessExpr)) {
+                continue;
+            }
+            resolve(expression).flatMap(ResolvedDeclaration::toAst).map(ContextSlicer::member).ifPresent(targets::add);
+        }
+        return targets;
+    }
+
+    private static Optional<ResolvedDeclaration> resolve(Expression expression) {
+        try {
+            if (expression instanceof MethodCallExpr call) {
+                return Optional.of(call.resolve());
+            }
+            if (expression instanceof ObjectCreationExpr creation) {
+                return Optional.of(creation.resolve());
+            }
+            if (expression instanceof MethodReferenceExpr reference) {
+                return Optional.of(reference.resolve());
+            }
+            if (expression instanceof NameExpr name) {
+                return Optional.of(name.resolve());
+            }
+            return Optional.of(((FieldAccessExpr) expression).resolve());
+        } catch (RuntimeException | StackOverflowError e) {
+            // Unresolvable (missing dependency, unsupported construct): leave it out
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * The member declaration for a resolved node; null for parameters and local variables.
+     */
+    private static Node member(Node node) {
+        if (node instanceof VariableDeclarator variable) {
+            return variable.getParentNode().filter(parent -> parent instanceof FieldDeclaration).orElse(null);
+        }
+        if (node instanceof FieldDeclaration || node instanceof CallableDeclaration<?>) {
+            return node;
+        }
+        return null;
+    }
+
+    private static String fullText(Node member, SourceCache.ParsedSource source) {
+        return member.getRange()
+            .map(range -> dedent(source.lines().lines(source.text(), range.begin.line, range.end.line)))
+            .orElseGet(() -> signature(member));
+    }
+
+    private static String signature(Node member) {
+        if (member instanceof CallableDeclaration<?> callable) {
+            return callable.getDeclarationAsString(true, true, true) + ";";
+        }
+        FieldDeclaration field = ((FieldDeclaration) member).clone();
+        field.getVariables().forEach(VariableDeclarator::removeInitializer);
+        field.removeComment();
+        return field.toString();
+    }
+
+    /**
+     * Remove the indentation the lines have in common.
+     */
+    private static String dedent(String text) {
+        int indent = Integer.MAX_VALUE;
+        for (String line : text.split("\n", -1)) {
+            if (!line.isBlank()) {
+                indent = Math.min(indent, line.length() - line.stripLeading().length());
+            }
+        }
+        if (indent == 0 || indent == Integer.MAX_VALUE) {
+            return text;
+        }
+        StringBuilder result = new StringBuilder(text.length());
+        for (String line : text.split("\n", -1)) {
+            if (!result.isEmpty()) {
+                result.append('\n');
+            }
+            result.append(line.isBlank() ? "" : line.substring(indent));
+        }
+        return result.toString();
+    }
+
+    private static String ownerName(Node member) {
+        for (Node node = member.getParentNode().orElse(null); node != null; node = node.getParentNode().orElse(null)) {
+            if (node instanceof TypeDeclaration<?> type) {
+                return type.getFullyQualifiedName().orElse(type.getNameAsString());
+            }
+        }
+        return "";
+    }
+
+    private static String render(List<Dependency> dependencies, int tokenBudget) {
+        int remaining = tokenBudget * CHARS_PER_TOKEN;
+        Map<String, List<String>> byOwner = new LinkedHashMap<>();
+        for (Dependency dependency : dependencies) {
+            int cost = dependency.text().length() + 1;
+            if (cost > remaining) {
+                continue;
+            }
+            remaining -= cost;
+            byOwner.computeIfAbsent(dependency.owner(), owner -> new ArrayList<>()).add(dependency.text());
+        }
+
+        StringBuilder slice = new StringBuilder();
+        byOwner.forEach((owner, texts) -> {
+            slice.append("// ").append(owner).append('\n');
+            for (String text : texts) {
+                slice.append(text).append('\n');
+            }
+            slice.append('\n');
+        });
+        return slice.toString();
+    }
+
+    private record Dependency(String owner, String text) {
+    }
+}
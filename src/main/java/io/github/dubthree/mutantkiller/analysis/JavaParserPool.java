@@ -0,0 +1,114 @@
+package io.github.dubthree.mutantkiller.analysis;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.resolution.TypeSolver;
+import com.github.javaparser.symbolsolver.JavaSymbolSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+
+/**
+ * Pool of {@link JavaParser} instances sharing one configuration, for use from many threads.
+ *
+ * <p>{@code StaticJavaParser} keeps its configuration in a thread-local and a {@code JavaParser}
+ * must not be used by two threads at once. Instead, each parse borrows an idle parser from a
+ * lock-free queue (creating one if none is idle) and returns it afterwards. Nothing is bound to
+ * threads, so the pool works the same for platform and virtual threads.
+ *
+ * <p>With symbol solving enabled, every parser has its own type solver, because type solvers cache
+ * and parse internally without synchronization. A compilation unit must therefore only be resolved
+ * inside the {@link #withParser} call that parsed it, or with a parser of its own from
+ * {@link #newParser}.
+ */
+public final class JavaParserPool {
+
+    public static final ParserConfiguration.LanguageLevel DEFAULT_LANGUAGE_LEVEL =
+        ParserConfiguration.LanguageLevel.BLEEDING_EDGE;
+
+    private static final JavaParserPool SHARED = new JavaParserPool(DEFAULT_LANGUAGE_LEVEL, List.of());
+
+    private final ParserConfiguration.LanguageLevel languageLevel;
+    private final List<Path> symbolSolverRoots;
+    private final ConcurrentLinkedQueue<JavaParser> idle = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param symbolSolverRoots source roots to resolve symbols against; empty disables symbol solving
+     */
+    public JavaParserPool(ParserConfiguration.LanguageLevel languageLevel, List<Path> symbolSolverRoots) {
+        this.languageLevel = languageLevel;
+        this.symbolSolverRoots = List.copyOf(symbolSolverRoots);
+    }
+
+    /**
+     * The process-wide pool without symbol solving.
+     */
+    public static JavaParserPool shared() {
+        return SHARED;
+    }
+
+    public boolean symbolSolving() {
+        return !symbolSolverRoots.isEmpty();
+    }
+
+    /**
+     * Parse source code, throwing {@link ParseProblemException} if it does not parse,
+     * like {@code StaticJavaParser.parse}.
+     */
+    public CompilationUnit parse(String code) {
+        ParseResult<CompilationUnit> result = withParser(parser -> parser.parse(code));
+        if (result.isSuccessful() && result.getResult().isPresent()) {
+            return result.getResult().get();
+        }
+        throw new ParseProblemException(result.getProblems());
+    }
+
+    /**
+     * Run work that needs a parser of its own, e.g. parsing and then resolving symbols.
+     */
+    public <T> T withParser(Function<JavaParser, T> work) {
+        JavaParser parser = idle.poll();
+        if (parser == null) {
+            parser = new JavaParser(newConfiguration());
+        }
+        try {
+            return work.apply(parser);
+        } finally {
+            idle.offer(parser);
+        }
+    }
+
+    /**
+     * A parser outside the pool, for a caller that keeps it, and the sources its type solver has
+     * parsed, for its whole life. It must not be used by two threads at once.
+     */
+    public JavaParser newParser() {
+        return new JavaParser(newConfiguration());
+    }
+
+    private ParserConfiguration newConfiguration() {
+        ParserConfiguration configuration = new ParserConfiguration().setLanguageLevel(languageLevel);
+        if (!symbolSolverRoots.isEmpty()) {
+            List<TypeSolver> solvers = new ArrayList<>();
+            solvers.add(new ReflectionTypeSolver());
+            for (Path root : symbolSolverRoots) {
+                if (Files.isDirectory(root)) {
+                    solvers.add(new JavaParserTypeSolver(root,
+                        new ParserConfiguration().setLanguageLevel(languageLevel)));
+                }
+            }
+            configuration.setSymbolResolver(new JavaSymbolSolver(new CombinedTypeSolver(solvers)));
+        }
+        return configuration;
+    }
+}
@@ -0,0 +1,90 @@
+package io.github.dubthree.mutantkiller.analysis;
+
+import java.util.Arrays;
+
+/**
+ * Start offsets of every line in a text, so a line can be located without splitting the text.
+ */
+public final class LineIndex {
+
+    private final int[] lineStarts;
+    private final int length;
+
+    private LineIndex(int[] lineStarts, int length) {
+        this.lineStarts = lineStarts;
+        this.length = length;
+    }
+
+    public static LineIndex of(CharSequence text) {
+        int[] starts = new int[64];
+        int count = 1; // line 1 starts at offset 0
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                if (count == starts.length) {
+                    starts = Arrays.copyOf(starts, count * 2);
+                }
+                starts[count++] = i + 1;
+            }
+        }
+        return new LineIndex(Arrays.copyOf(starts, count), text.length());
+    }
+
+    /**
+     * Number of lines; a trailing newline does not start an extra line.
+     */
+    public int lineCount() {
+        int count = lineStarts.length;
+        return count > 1 && lineStarts[count - 1] == length ? count - 1 : count;
+    }
+
+    /**
+     * Offset of the first character of a 1-based line.
+     */
+    public int lineStart(int line) {
+        return lineStarts[line - 1];
+    }
+
+    /**
+     * Offset just past the last character of a 1-based line, excluding the line terminator.
+     */
+    public int lineEnd(CharSequence text, int line) {
+        int end = line < lineStarts.length ? lineStarts[line] - 1 : length;
+        if (end > lineStarts[line - 1] && text.charAt(end - 1) == '\r') {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Append the lines around {@code line} to {@code out}, numbered, with the line itself marked
+     * by {@code >>>}. The lines are copied straight from {@code text}; nothing else is allocated.
+     *
+     * @param radius number of lines to show before and after the marked line
+     */
+    public void appendContext(CharSequence text, int line, int radius, StringBuilder out) {
+        int first = Math.max(1, line - radius);
+        int last = Math.min(lineCount(), line + radius);
+        for (int i = first; i <= last; i++) {
+            out.append(i == line ? ">>> " : "    ");
+            if (i < 1000) {
+                out.append(i < 10 ? "   " : i < 100 ? "  " : " ");
+            }
+            out.append(i).append(": ");
+            out.append(text, lineStart(i), lineEnd(text, i));
+            out.append(System.lineSeparator());
+        }
+    }
+
+    /**
+     * The text of a range of 1-based lines, without the final line terminator.
+     * Lines outside the text are clamped.
+     */
+    public String lines(CharSequence text, int firstLine, int lastLine) {
+        int first = Math.max(1, firstLine);
+        int last = Math.min(lineCount(), lastLine);
+        if (first > last) {
+            return "";
+        }
+        return text.subSequence(lineStart(first), lineEnd(text, last)).toString();
+    }
+}
@@ -1,25 +1,159 @@
 package io.github.dubthree.mutantkiller.analysis;
 
-import com.github.javaparser.StaticJavaParser;
-import com.github.javaparser.ast.CompilationUnit;
-import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.Range;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.BodyDeclaration;
 import io.github.dubthree.mutantkiller.config.MutantKillerConfig;
 import io.github.dubthree.mutantkiller.pit.MutationResult;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Analyzes mutations to understand what code was mutated and why tests didn't catch it.
+ *
+ * <p>An analyzer is safe to use from several threads; {@link #analyzeAll} analyzes a batch of
+ * mutations on all cores.
  */
 public class MutantAnalyzer {
 
+    /**
+     * The analysis of one mutation, or the exception that prevented it.
+     */
+    public record Outcome(MutationResult mutation, MutantAnalysis analysis, Exception error) {
+
+        /**
+         * The analysis, rethrowing the exception if the analysis failed.
+         */
+        public MutantAnalysis get() throws IOException {
+            if (error instanceof IOException e) {
+                throw e;
+            }
+            if (error instanceof RuntimeException e) {
+                throw e;
+            }
+            return analysis;
+        }
+    }
+
     private final MutantKillerConfig config;
+    private final SourceCache sourceCache;
+    private final ReentrantLock indexLock = new ReentrantLock();
+    private volatile SourceIndex sourceIndex;
+    private volatile TestIndex testIndex;
+    private volatile ContextSlicer contextSlicer;
+    private final TestClassSummarizer testSummarizer;
+    private final ThreadLocal<StringBuilder> contextBuffer = ThreadLocal.withInitial(() -> new StringBuilder(1024));
 
     public MutantAnalyzer(MutantKillerConfig config) {
+        this(config, new SourceCache());
+    }
+
+    public MutantAnalyzer(MutantKillerConfig config, SourceCache sourceCache) {
         this.config = config;
+        this.sourceCache = sourceCache;
+        this.testSummarizer = config.testTokens() > 0 ? new TestClassSummarizer(config.testTokens()) : null;
+    }
+
+    /**
+     * The cache of source and test files read by this analyzer.
+     */
+    public SourceCache sourceCache() {
+        return sourceCache;
+    }
+
+    /**
+     * The index of all types under the configured source and test roots, built on first use.
+     */
+    public SourceIndex sourceIndex() throws IOException {
+        if (sourceIndex != null) {
+            return sourceIndex;
+        }
+        indexLock.lock();
+        try {
+            if (sourceIndex != null) {
+                return sourceIndex;
+            }
+            List<Path> sourceRoots = sourceRoots();
+            List<Path> testRoots = config.testDir() != null ? List.of(config.testDir()) : List.of();
+            Path indexFile = config.cacheDir() != null
+                ? SourceIndex.indexFile(config.cacheDir(), sourceRoots, testRoots)
+                : null;
+            sourceIndex = SourceIndex.build(sourceRoots, testRoots, indexFile);
+            return sourceIndex;
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    /**
+     * The reverse index from production classes to the tests referring to them, built on first use.
+     */
+    public TestIndex testIndex() throws IOException {
+        if (testIndex != null) {
+            return testIndex;
+        }
+        SourceIndex index = sourceIndex();
+        indexLock.lock();
+        try {
+            if (testIndex == null) {
+                testIndex = TestIndex.of(index);
+            }
+            return testIndex;
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    /**
+     * The slicer for the declarations a mutated method depends on, or null if slicing is disabled.
+     */
+    private ContextSlicer contextSlicer() {
+        if (config.sliceTokens() == 0) {
+            return null;
+        }
+        if (contextSlicer == null) {
+            indexLock.lock();
+            try {
+                if (contextSlicer == null) {
+                    contextSlicer = new ContextSlicer(
+                        new JavaParserPool(JavaParserPool.DEFAULT_LANGUAGE_LEVEL, sourceRoots()));
+                }
+            } finally {
+                indexLock.unlock();
+            }
+        }
+        return contextSlicer;
+    }
+
+    private List<Path> sourceRoots() {
+        List<Path> sourceRoots = new ArrayList<>();
+        sourceRoots.add(config.sourceDir());
+        sourceRoots.addAll(config.extraSourceDirs());
+        return sourceRoots;
+    }
+
+    /**
+     * Analyze mutations in parallel. Outcomes are in the order of the mutations; a mutation
+     * that cannot be analyzed yields an outcome holding the error.
+     */
+    public List<Outcome> analyzeAll(List<MutationResult> mutations) throws IOException {
+        // Build the indexes once up front rather than racing to build them
+        testIndex();
+        return mutations.parallelStream()
+            .map(mutation -> {
+                try {
+                    return new Outcome(mutation, analyze(mutation), null);
+                } catch (IOException | RuntimeException e) {
+                    return new Outcome(mutation, null, e);
+                }
+            })
+            .toList();
     }
 
     /**
@@ -32,61 +166,101 @@ public class MutantAnalyzer {
             throw new IOException("Could not find source file for: " + mutation.mutatedClass());
         }
 
-        // Parse source
-        String sourceCode = Files.readString(sourceFile);
-        CompilationUnit cu = StaticJavaParser.parse(sourceCode);
-
-        // Find the mutated method
-        Optional<MethodDeclaration> method = cu.findAll(MethodDeclaration.class).stream()
-            .filter(m -> m.getNameAsString().equals(mutation.mutatedMethod()))
-            .findFirst();
-
-        // Extract context around the mutation line
-        String[] lines = sourceCode.split("\n");
-        int mutationLine = mutation.lineNumber() - 1; // 0-indexed
-        int contextStart = Math.max(0, mutationLine - 5);
-        int contextEnd = Math.min(lines.length, mutationLine + 6);
-        
-        StringBuilder context = new StringBuilder();
-        for (int i = contextStart; i < contextEnd; i++) {
-            String prefix = (i == mutationLine) ? ">>> " : "    ";
-            context.append(String.format("%s%4d: %s%n", prefix, i + 1, lines[i]));
-        }
+        // Parse source (shared by all mutants of the same class)
+        SourceCache.ParsedSource source = sourceCache.get(sourceFile);
+        String sourceCode = source.text();
+
+        // Find the callable holding the mutation, by line, name and descriptor. Its text is sliced
+        // from the source rather than printed from the shared tree, which is not thread-safe.
+        Optional<Range> methodRange = source.callables()
+            .resolve(mutation.mutatedMethod(), mutation.methodDescription(), mutation.lineNumber())
+            .map(MutantAnalyzer::declarationOf)
+            .flatMap(Node::getRange);
+        Optional<String> method = methodRange
+            .map(range -> source.lines().lines(sourceCode, range.begin.line, range.end.line));
+
+        // Fields, helpers and collaborator signatures the method depends on
+        ContextSlicer slicer = contextSlicer();
+        String dependencies = slicer != null && methodRange.isPresent()
+            ? slicer.slice(source, methodRange.get().begin.line, methodRange.get().end.line, config.sliceTokens())
+            : null;
 
-        // Find existing test file
+        // Extract context around the mutation line, sliced from the cached line index
+        StringBuilder context = contextBuffer.get();
+        context.setLength(0);
+        source.lines().appendContext(sourceCode, mutation.lineNumber(), config.contextLines(), context);
+
+        // Find existing test file; large ones are summarized around the mutated method
         Path testFile = findTestFile(mutation.mutatedClass());
-        String existingTestCode = testFile != null ? Files.readString(testFile) : null;
+        String existingTestCode = null;
+        String testSummary = null;
+        if (testFile != null) {
+            SourceCache.ParsedSource test = sourceCache.get(testFile);
+            existingTestCode = test.text();
+            testSummary = testSummarizer != null
+                ? testSummarizer.summarize(test, mutation.mutatedClass(), mutation.mutatedMethod())
+                : existingTestCode;
+        }
 
         return new MutantAnalysis(
             mutation,
             sourceFile,
             sourceCode,
-            method.map(MethodDeclaration::toString).orElse(null),
+            method.orElse(null),
             context.toString(),
+            dependencies,
             testFile,
-            existingTestCode
+            existingTestCode,
+            testSummary
         );
     }
 
-    private Path findSourceFile(String className) {
-        String relativePath = className.replace('.', '/') + ".java";
-        Path candidate = config.sourceDir().resolve(relativePath);
-        if (Files.exists(candidate)) {
-            return candidate;
+    /**
+     * The member to show for a callable: a lambda is shown with the method or field declaring it.
+     */
+    private static Node declarationOf(CallableIndex.Callable callable) {
+        Node node = callable.node();
+        if (callable.kind() != CallableIndex.Kind.LAMBDA) {
+            return node;
+        }
+        for (Node parent = node; parent != null; parent = parent.getParentNode().orElse(null)) {
+            if (parent instanceof BodyDeclaration<?>) {
+                return parent;
+            }
         }
-        // Try without package prefix variations
-        return null;
+        return node;
+    }
+
+    private Path findSourceFile(String className) throws IOException {
+        return sourceIndex().findSource(className)
+            .map(SourceIndex.TypeLocation::file)
+            .orElse(null);
     }
 
-    private Path findTestFile(String className) {
-        String simpleClassName = className.substring(className.lastIndexOf('.') + 1);
-        String testClassName = simpleClassName + "Test";
-        String packagePath = className.substring(0, className.lastIndexOf('.')).replace('.', '/');
-        
-        Path candidate = config.testDir().resolve(packagePath).resolve(testClassName + ".java");
-        if (Files.exists(candidate)) {
-            return candidate;
+    /**
+     * The conventional {@code FooTest} of the top-level class declaring the mutated class if there
+     * is one, otherwise the test that refers to the class most densely (e.g. {@code FooIT}).
+     */
+    private Path findTestFile(String className) throws IOException {
+        SourceIndex index = sourceIndex();
+        String topLevel = index.findSource(className)
+            .map(location -> topLevelName(location.typeName()))
+            .orElseGet(() -> topLevelName(className));
+        Optional<Path> conventional = index.findTest(topLevel + "Test").map(SourceIndex.TypeLocation::file);
+        if (conventional.isPresent()) {
+            return conventional.get();
         }
-        return null;
+        Optional<Path> referencing = testIndex().bestTestFile(className);
+        if (referencing.isPresent() || config.testDir() == null) {
+            return referencing.orElse(null);
+        }
+        // Fall back to the mirrored path, in case the test file does not parse
+        Path candidate = config.testDir().resolve(topLevel.replace('.', '/') + "Test.java");
+        return Files.exists(candidate) ? candidate : null;
+    }
+
+    private static String topLevelName(String className) {
+        int nested = className.indexOf('$');
+        return nested >= 0 ? className.substring(0, nested) : className;
     }
 }
@@ -0,0 +1,100 @@
+package io.github.dubthree.mutantkiller.analysis;
+
+import io.github.dubthree.mutantkiller.pit.MutationResult;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Surviving mutations close together in one method, for which tests are generated in one request.
+ * The members share the mutated class and method, and so the test class and method prompts.
+ *
+ * <p>In a group of several mutations, each is labelled {@code M1}, {@code M2}, ... in the prompt,
+ * and the model names the labels each generated test kills. The prompt itself is rendered from the
+ * {@code analyze} template with the {@link #promptValues() values} of the group.
+ */
+public record MutantGroup(List<MutantAnalysis> members) {
+
+    public MutantGroup {
+        if (members.isEmpty()) {
+            throw new IllegalArgumentException("A mutant group needs at least one member");
+        }
+        members = List.copyOf(members);
+    }
+
+    public static MutantGroup of(MutantAnalysis analysis) {
+        return new MutantGroup(List.of(analysis));
+    }
+
+    /**
+     * The first member, which stands for the group where one analysis is needed, e.g. for the test file.
+     */
+    public MutantAnalysis first() {
+        return members.get(0);
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    /**
+     * The label of a member in the prompt.
+     */
+    public static String label(int member) {
+        return "M" + (member + 1);
+    }
+
+    /**
+     * The values for the prompt template. Those of a single mutation are taken from the first member;
+     * {@code mutations} lists every member with its label, and {@code contexts} each distinct code
+     * context once, since mutations on the same line share it.
+     */
+    public Map<String, Object> promptValues() {
+        MutantAnalysis first = first();
+        MutationResult firstMutation = first.mutation();
+        Map<String, Object> values = new HashMap<>();
+        values.put("mutatedClass", firstMutation.mutatedClass());
+        values.put("mutatedMethod", firstMutation.mutatedMethod());
+        values.put("lineNumber", firstMutation.lineNumber());
+        values.put("mutatorDescription", firstMutation.getMutatorDescription());
+        values.put("contextAroundMutation", chomp(first.contextAroundMutation()));
+        values.put("methodCode", first.mutatedMethod());
+        values.put("dependencies", chomp(first.dependencies()));
+        values.put("existingTestCode", first.hasExistingTest()
+            ? (first.testSummary() != null ? first.testSummary() : first.existingTestCode())
+            : null);
+        values.put("group", members.size() > 1);
+
+        List<Map<String, Object>> mutations = new ArrayList<>(members.size());
+        Set<String> seen = new HashSet<>();
+        List<Map<String, Object>> contexts = new ArrayList<>();
+        for (int i = 0; i < members.size(); i++) {
+            MutantAnalysis member = members.get(i);
+            mutations.add(Map.of(
+                "label", label(i),
+                "lineNumber", member.mutation().lineNumber(),
+                "mutatorDescription", member.mutation().getMutatorDescription()));
+            if (seen.add(member.contextAroundMutation())) {
+                contexts.add(Map.of(
+                    "lineNumber", member.mutation().lineNumber(),
+                    "contextAroundMutation", chomp(member.contextAroundMutation())));
+            }
+        }
+        values.put("mutations", mutations);
+        values.put("contexts", contexts);
+        return values;
+    }
+
+    /** Without the final line break, which the template puts back before a closing fence. */
+    private static String chomp(String text) {
+        if (text == null || !text.endsWith("\n")) {
+            return text;
+        }
+        int end = text.length() - 1;
+        return text.substring(0, end > 0 && text.charAt(end - 1) == '\r' ? end - 1 : end);
+    }
+}
@@ -0,0 +1,68 @@
+package io.github.dubthree.mutantkiller.analysis;
+
+import io.github.dubthree.mutantkiller.pit.MutationResult;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Clusters surviving mutations so that tests for mutations close together are generated in one request.
+ *
+ * <p>Mutations are grouped when they are in the same method of the same class, are tested by the
+ * same test class, and each is at most {@code maxLineGap} lines below the previous one. Groups hold
+ * at most {@code maxGroupSize} mutations and are returned in the order of their first member.
+ */
+public final class MutantGrouper {
+
+    private final int maxGroupSize;
+    private final int maxLineGap;
+
+    public MutantGrouper(int maxGroupSize, int maxLineGap) {
+        if (maxGroupSize < 1) {
+            throw new IllegalArgumentException("Group size must be at least 1: " + maxGroupSize);
+        }
+        this.maxGroupSize = maxGroupSize;
+        this.maxLineGap = maxLineGap;
+    }
+
+    /**
+     * Group analyses by their tags. Every tag ends up in exactly one group.
+     */
+    public <T> List<List<T>> group(Map<T, MutantAnalysis> analyses) {
+        Map<T, Integer> position = new HashMap<>();
+        for (T tag : analyses.keySet()) {
+            position.put(tag, position.size());
+        }
+        Map<List<Object>, List<T>> byMethod = new LinkedHashMap<>();
+        for (Map.Entry<T, MutantAnalysis> entry : analyses.entrySet()) {
+            MutationResult mutation = entry.getValue().mutation();
+            List<Object> key = List.of(mutation.mutatedClass(), mutation.mutatedMethod(),
+                Objects.toString(mutation.methodDescription()), Objects.toString(entry.getValue().testFile()));
+            byMethod.computeIfAbsent(key, k -> new ArrayList<>()).add(entry.getKey());
+        }
+
+        List<List<T>> groups = new ArrayList<>();
+        for (List<T> tags : byMethod.values()) {
+            tags.sort(Comparator.comparingInt(tag -> analyses.get(tag).mutation().lineNumber()));
+            List<T> group = new ArrayList<>();
+            int previousLine = 0;
+            for (T tag : tags) {
+                int line = analyses.get(tag).mutation().lineNumber();
+                if (!group.isEmpty() && (group.size() == maxGroupSize || line - previousLine > maxLineGap)) {
+                    groups.add(group);
+                    group = new ArrayList<>();
+                }
+                group.add(tag);
+                previousLine = line;
+            }
+            groups.add(group);
+        }
+        groups.sort(Comparator.comparingInt(group -> group.stream().mapToInt(position::get).min().orElseThrow()));
+        return groups;
+    }
+}
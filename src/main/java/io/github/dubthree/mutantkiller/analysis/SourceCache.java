@@ -0,0 +1,165 @@
+package io.github.dubthree.mutantkiller.analysis;
+
+import com.github.javaparser.ast.CompilationUnit;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded LRU cache of source files read during analysis, keyed by path and modification time.
+ *
+ * <p>PIT usually reports many survivors per class, so the same source and test files are
+ * requested over and over. Each entry holds the raw text, a line-offset index, the parsed
+ * {@link CompilationUnit} and its {@link CallableIndex}, which are only built the first time
+ * they are asked for.
+ *
+ * <p>The cache is safe to share between threads. The lock is only held for map updates, never
+ * while reading or parsing a file, so it does not pin virtual threads.
+ */
+public class SourceCache {
+
+    public static final int DEFAULT_MAX_ENTRIES = 64;
+
+    private final int maxEntries;
+    private final JavaParserPool parsers;
+    private final Map<Path, ParsedSource> entries;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public SourceCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public SourceCache(int maxEntries) {
+        this(maxEntries, JavaParserPool.shared());
+    }
+
+    public SourceCache(int maxEntries, JavaParserPool parsers) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Cache size must be at least 1: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.parsers = parsers;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Path, ParsedSource> eldest) {
+                return size() > SourceCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached source for the file, re-reading it if it changed on disk.
+     */
+    public ParsedSource get(Path file) throws IOException {
+        Path key = file.toAbsolutePath().normalize();
+        long modified = Files.getLastModifiedTime(key).toMillis();
+
+        ParsedSource cached = lookup(key, modified);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+
+        misses.incrementAndGet();
+        ParsedSource source = new ParsedSource(file, Files.readString(key), modified, parsers);
+        lock.lock();
+        try {
+            // Another thread may have read the same file meanwhile; share its entry so it is parsed once
+            ParsedSource raced = entries.get(key);
+            if (raced != null && raced.modified == modified) {
+                return raced;
+            }
+            entries.put(key, source);
+            return source;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ParsedSource lookup(Path key, long modified) {
+        lock.lock();
+        try {
+            ParsedSource cached = entries.get(key);
+            return cached != null && cached.modified == modified ? cached : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A source file's text, line index and (lazily parsed) compilation unit.
+     */
+    public static final class ParsedSource {
+        private final Path path;
+        private final String text;
+        private final long modified;
+        private final LineIndex lines;
+        private final JavaParserPool parsers;
+        private CompilationUnit compilationUnit;
+        private CallableIndex callables;
+
+        ParsedSource(Path path, String text, long modified, JavaParserPool parsers) {
+            this.path = path;
+            this.text = text;
+            this.modified = modified;
+            this.lines = LineIndex.of(text);
+            this.parsers = parsers;
+        }
+
+        public Path path() {
+            return path;
+        }
+
+        public String text() {
+            return text;
+        }
+
+        public LineIndex lines() {
+            return lines;
+        }
+
+        /**
+         * Parse the source on first use; later calls return the same tree.
+         */
+        public synchronized CompilationUnit compilationUnit() {
+            if (compilationUnit == null) {
+                compilationUnit = parsers.parse(text);
+            }
+            return compilationUnit;
+        }
+
+        /**
+         * Index the callables of the compilation unit on first use.
+         */
+        public synchronized CallableIndex callables() {
+            if (callables == null) {
+                callables = CallableIndex.of(compilationUnit());
+            }
+            return callables;
+        }
+    }
+}
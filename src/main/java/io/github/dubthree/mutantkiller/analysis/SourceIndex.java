@@ -0,0 +1,434 @@
+package io.github.dubthree.mutantkiller.analysis;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.ImportDeclaration;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.FieldAccessExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Index of every type declared under a set of source and test roots.
+ *
+ * <p>Built by one walk of all roots, with the files parsed in parallel. Types are keyed by their
+ * binary name ({@code com.example.Outer$Inner}), so nested types and secondary top-level types
+ * resolve with a single hash lookup. The type name comes from the package declaration rather than
+ * the file's location, which also covers generated sources and non-standard layouts.
+ *
+ * <p>For test files the scan also records imports and the types each file refers to, which
+ * {@link TestIndex} resolves into a reverse index from production classes to their tests.
+ *
+ * <p>The index can be persisted; a later build only re-parses files whose size or modification
+ * time changed.
+ */
+public final class SourceIndex {
+
+    /**
+     * Where a type is declared.
+     *
+     * @param test whether the file is under a test root
+     */
+    public record TypeLocation(String typeName, Path file, int beginLine, int endLine, boolean test) {
+    }
+
+    private static final int MAGIC = 0x4D4B5331; // "MKS1"
+    private static final int VERSION = 2;
+
+    /** Weight of a constructor call relative to a plain type reference. */
+    private static final int CREATION_WEIGHT = 2;
+
+    private final Map<String, TypeLocation> types;
+    private final List<FileEntry> files;
+    private final int parsed;
+
+    private SourceIndex(List<FileEntry> files, int parsed) {
+        this.files = files;
+        this.parsed = parsed;
+        this.types = new HashMap<>();
+        // Main sources win over test sources, earlier roots over later ones
+        for (boolean test : new boolean[] {false, true}) {
+            for (FileEntry file : files) {
+                if (file.test != test) {
+                    continue;
+                }
+                for (TypeEntry type : file.types) {
+                    types.putIfAbsent(type.name, new TypeLocation(type.name, file.path, type.beginLine, type.endLine, test));
+                }
+            }
+        }
+    }
+
+    /**
+     * Build the index without persisting it.
+     */
+    public static SourceIndex build(List<Path> sourceRoots, List<Path> testRoots) throws IOException {
+        return build(sourceRoots, testRoots, null);
+    }
+
+    /**
+     * Build the index, reusing the entries stored in {@code indexFile} for unchanged files,
+     * and store the result back if anything changed. A null {@code indexFile} disables persistence.
+     */
+    public static SourceIndex build(List<Path> sourceRoots, List<Path> testRoots, Path indexFile) throws IOException {
+        Map<Path, FileEntry> previous = indexFile != null ? load(indexFile) : Map.of();
+
+        List<SourceFile> sources = new ArrayList<>();
+        collect(sourceRoots, false, sources);
+        collect(testRoots, true, sources);
+
+        AtomicInteger parsed = new AtomicInteger();
+        List<FileEntry> files;
+        try {
+            files = sources.parallelStream()
+                .map(source -> {
+                    FileEntry cached = previous.get(source.path);
+                    if (cached != null && cached.test == source.test
+                        && cached.size == source.size && cached.modified == source.modified) {
+                        return cached;
+                    }
+                    parsed.incrementAndGet();
+                    return scan(source);
+                })
+                .toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        SourceIndex index = new SourceIndex(files, parsed.get());
+        if (indexFile != null && (parsed.get() > 0 || previous.size() != files.size())) {
+            try {
+                index.save(indexFile);
+            } catch (IOException e) {
+                System.err.println("Could not write source index " + indexFile + ": " + e.getMessage());
+            }
+        }
+        return index;
+    }
+
+    /**
+     * The index file for a set of roots inside {@code cacheDir}. Different projects get different files.
+     */
+    public static Path indexFile(Path cacheDir, List<Path> sourceRoots, List<Path> testRoots) {
+        StringBuilder key = new StringBuilder();
+        for (Path root : sourceRoots) {
+            key.append("main:").append(root.toAbsolutePath().normalize()).append('\n');
+        }
+        for (Path root : testRoots) {
+            key.append("test:").append(root.toAbsolutePath().normalize()).append('\n');
+        }
+        UUID id = UUID.nameUUIDFromBytes(key.toString().getBytes(StandardCharsets.UTF_8));
+        return cacheDir.resolve("source-index-" + id + ".bin");
+    }
+
+    /**
+     * Look up a type by binary or canonical name. Anonymous and local classes
+     * ({@code Outer$1}, {@code Outer$1Local}) resolve to their enclosing type.
+     */
+    public Optional<TypeLocation> find(String className) {
+        String name = className;
+        while (true) {
+            TypeLocation location = types.get(name);
+            if (location == null && name.indexOf('$') < 0) {
+                location = types.get(binaryName(name));
+            }
+            if (location != null) {
+                return Optional.of(location);
+            }
+            int nested = name.lastIndexOf('$');
+            if (nested < 0) {
+                return Optional.empty();
+            }
+            name = name.substring(0, nested);
+        }
+    }
+
+    /**
+     * Look up a type declared under a main source root.
+     */
+    public Optional<TypeLocation> findSource(String className) {
+        return find(className).filter(location -> !location.test());
+    }
+
+    /**
+     * Look up a type declared under a test root.
+     */
+    public Optional<TypeLocation> findTest(String className) {
+        return find(className).filter(TypeLocation::test);
+    }
+
+    List<FileEntry> files() {
+        return files;
+    }
+
+    /**
+     * Number of indexed types.
+     */
+    public int size() {
+        return types.size();
+    }
+
+    /**
+     * Number of indexed files.
+     */
+    public int fileCount() {
+        return files.size();
+    }
+
+    /**
+     * Number of files parsed while building this index, i.e. not reused from the stored index.
+     */
+    public int parsedCount() {
+        return parsed;
+    }
+
+    /**
+     * Canonical names use dots for nested types too; try each dot after the package as a '$'.
+     */
+    private String binaryName(String canonicalName) {
+        char[] chars = canonicalName.toCharArray();
+        for (int i = chars.length - 1; i >= 0; i--) {
+            if (chars[i] == '.') {
+                chars[i] = '$';
+                String candidate = new String(chars);
+                if (types.containsKey(candidate)) {
+                    return candidate;
+                }
+            }
+        }
+        return canonicalName;
+    }
+
+    private static void collect(List<Path> roots, boolean test, List<SourceFile> sources) throws IOException {
+        for (Path root : roots) {
+            if (root == null || !Files.isDirectory(root)) {
+                continue;
+            }
+            try (Stream<Path> paths = Files.walk(root)) {
+                paths.filter(path -> path.getFileName().toString().endsWith(".java"))
+                    .filter(Files::isRegularFile)
+                    .sorted()
+                    .forEach(path -> {
+                        try {
+                            Path file = path.toAbsolutePath().normalize();
+                            sources.add(new SourceFile(file, test,
+                                Files.size(file), Files.getLastModifiedTime(file).toMillis()));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private static FileEntry scan(SourceFile source) {
+        String code;
+        try {
+            // Decoded leniently: one Latin-1 file must not fail the whole scan
+            code = new String(Files.readAllBytes(source.path), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // Partial results are fine here: a file with a syntax error still declares its types
+        Optional<CompilationUnit> cu = JavaParserPool.shared().withParser(parser -> parser.parse(code)).getResult();
+        if (cu.isEmpty()) {
+            return new FileEntry(source.path, source.test, source.size, source.modified,
+                List.of(), "", List.of(), Map.of());
+        }
+
+        CompilationUnit unit = cu.get();
+        String packageName = unit.getPackageDeclaration().map(pkg -> pkg.getNameAsString()).orElse("");
+        String prefix = packageName.isEmpty() ? "" : packageName + ".";
+        List<TypeEntry> types = new ArrayList<>();
+        for (TypeDeclaration<?> type : unit.getTypes()) {
+            addType(prefix + type.getNameAsString(), type, types);
+        }
+
+        if (!source.test) {
+            return new FileEntry(source.path, false, source.size, source.modified,
+                types, packageName, List.of(), Map.of());
+        }
+        List<String> imports = new ArrayList<>();
+        Map<String, Integer> references = new LinkedHashMap<>();
+        collectReferences(unit, imports, references);
+        return new FileEntry(source.path, true, source.size, source.modified,
+            types, packageName, imports, references);
+    }
+
+    /**
+     * Record imports and weighted references to types, as written in the source. Resolving them
+     * to actual classes is left to {@link TestIndex}, so that stored entries stay valid when
+     * other files change.
+     */
+    private static void collectReferences(CompilationUnit unit, List<String> imports, Map<String, Integer> references) {
+        for (ImportDeclaration declaration : unit.getImports()) {
+            String name = declaration.getNameAsString();
+            if (declaration.isStatic() && !declaration.isAsterisk()) {
+                // import static a.b.Foo.bar: the class is the qualifier
+                name = name.substring(0, Math.max(0, name.lastIndexOf('.')));
+            }
+            imports.add(declaration.isAsterisk() && !declaration.isStatic() ? name + ".*" : name);
+            if (!declaration.isAsterisk() || declaration.isStatic()) {
+                references.merge(name, 1, Integer::sum);
+            }
+        }
+        for (ClassOrInterfaceType type : unit.findAll(ClassOrInterfaceType.class)) {
+            boolean scopeOfOther = type.getParentNode()
+                .filter(parent -> parent instanceof ClassOrInterfaceType outer
+                    && outer.getScope().filter(scope -> scope == type).isPresent())
+                .isPresent();
+            if (!scopeOfOther) {
+                references.merge(type.getNameWithScope(), 1, Integer::sum);
+            }
+        }
+        for (ObjectCreationExpr creation : unit.findAll(ObjectCreationExpr.class)) {
+            // The created type was already counted once as a type reference
+            references.merge(creation.getType().getNameWithScope(), CREATION_WEIGHT - 1, Integer::sum);
+        }
+        // Static access through a type name: Foo.bar(), Foo.CONSTANT
+        for (MethodCallExpr call : unit.findAll(MethodCallExpr.class)) {
+            call.getScope().ifPresent(scope -> addTypeName(scope, references));
+        }
+        for (FieldAccessExpr access : unit.findAll(FieldAccessExpr.class)) {
+            addTypeName(access.getScope(), references);
+        }
+    }
+
+    private static void addTypeName(Expression scope, Map<String, Integer> references) {
+        if (scope instanceof NameExpr name && Character.isUpperCase(name.getNameAsString().charAt(0))) {
+            references.merge(name.getNameAsString(), 1, Integer::sum);
+        }
+    }
+
+    private static void addType(String name, TypeDeclaration<?> type, List<TypeEntry> types) {
+        int begin = type.getBegin().map(position -> position.line).orElse(0);
+        int end = type.getEnd().map(position -> position.line).orElse(0);
+        types.add(new TypeEntry(name, begin, end));
+        for (BodyDeclaration<?> member : type.getMembers()) {
+            if (member instanceof TypeDeclaration<?> nested) {
+                addType(name + "$" + nested.getNameAsString(), nested, types);
+            }
+        }
+    }
+
+    private static Map<Path, FileEntry> load(Path indexFile) {
+        if (!Files.isRegularFile(indexFile)) {
+            return Map.of();
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return Map.of();
+            }
+            int fileCount = in.readInt();
+            Map<Path, FileEntry> files = new HashMap<>(fileCount * 2);
+            for (int i = 0; i < fileCount; i++) {
+                Path path = Path.of(in.readUTF());
+                boolean test = in.readBoolean();
+                long size = in.readLong();
+                long modified = in.readLong();
+                int typeCount = in.readInt();
+                List<TypeEntry> types = new ArrayList<>(typeCount);
+                for (int j = 0; j < typeCount; j++) {
+                    types.add(new TypeEntry(in.readUTF(), in.readInt(), in.readInt()));
+                }
+                String packageName = in.readUTF();
+                int importCount = in.readInt();
+                List<String> imports = new ArrayList<>(importCount);
+                for (int j = 0; j < importCount; j++) {
+                    imports.add(in.readUTF());
+                }
+                int referenceCount = in.readInt();
+                Map<String, Integer> references = new LinkedHashMap<>(referenceCount * 2);
+                for (int j = 0; j < referenceCount; j++) {
+                    references.put(in.readUTF(), in.readInt());
+                }
+                files.put(path, new FileEntry(path, test, size, modified, types, packageName, imports, references));
+            }
+            return files;
+        } catch (IOException | RuntimeException e) {
+            // Truncated or corrupt index; rebuild from scratch
+            return Map.of();
+        }
+    }
+
+    private void save(Path indexFile) throws IOException {
+        Path dir = indexFile.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, indexFile.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(files.size());
+                for (FileEntry file : files) {
+                    out.writeUTF(file.path.toString());
+                    out.writeBoolean(file.test);
+                    out.writeLong(file.size);
+                    out.writeLong(file.modified);
+                    out.writeInt(file.types.size());
+                    for (TypeEntry type : file.types) {
+                        out.writeUTF(type.name);
+                        out.writeInt(type.beginLine);
+                        out.writeInt(type.endLine);
+                    }
+                    out.writeUTF(file.packageName);
+                    out.writeInt(file.imports.size());
+                    for (String imported : file.imports) {
+                        out.writeUTF(imported);
+                    }
+                    out.writeInt(file.references.size());
+                    for (Map.Entry<String, Integer> reference : file.references.entrySet()) {
+                        out.writeUTF(reference.getKey());
+                        out.writeInt(reference.getValue());
+                    }
+                }
+            }
+            try {
+                Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private record SourceFile(Path path, boolean test, long size, long modified) {
+    }
+
+    /**
+     * An indexed file. Imports and references are only recorded for test files.
+     */
+    record FileEntry(Path path, boolean test, long size, long modified, List<TypeEntry> types,
+                     String packageName, List<String> imports, Map<String, Integer> references) {
+    }
+
+    record TypeEntry(String name, int beginLine, int endLine) {
+    }
+}
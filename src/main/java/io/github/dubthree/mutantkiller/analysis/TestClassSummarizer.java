@@ -0,0 +1,222 @@
+package io.github.dubthree.mutantkiller.analysis;
+
+import com.github.javaparser.Position;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.MethodReferenceExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.ast.stmt.BlockStmt;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Shrinks an existing test class to what the model needs to extend it.
+ *
+ * <p>Imports, fields, fixtures ({@code @BeforeEach} and friends) and helper methods are kept as
+ * written. Test methods are ranked by how often they call the mutated method (or construct the
+ * class, for constructors); the few most relevant keep their bodies as far as the token budget
+ * (estimated at four characters per token) allows, and the rest are reduced to their signatures.
+ * The text is cut from the source rather than pretty-printed, so what remains is verbatim.
+ */
+public final class TestClassSummarizer {
+
+    public static final int DEFAULT_RELEVANT_TESTS = 3;
+
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final String ELIDED_BODY = "{ /* ... */ }";
+    private static final Set<String> TEST_ANNOTATIONS = Set.of(
+        "Test", "ParameterizedTest", "RepeatedTest", "TestFactory", "TestTemplate", "Property", "Example");
+
+    private final int tokenBudget;
+    private final int relevantTests;
+
+    public TestClassSummarizer(int tokenBudget) {
+        this(tokenBudget, DEFAULT_RELEVANT_TESTS);
+    }
+
+    /**
+     * @param relevantTests how many of the most relevant tests keep their bodies if the budget allows
+     */
+    public TestClassSummarizer(int tokenBudget, int relevantTests) {
+        this.tokenBudget = tokenBudget;
+        this.relevantTests = relevantTests;
+    }
+
+    /**
+     * Summarize a test class for a mutation in {@code mutatedMethod} (PIT's JVM name) of
+     * {@code mutatedClass}. Returns the text unchanged if it already fits the budget.
+     */
+    public String summarize(SourceCache.ParsedSource testSource, String mutatedClass, String mutatedMethod) {
+        String text = testSource.text();
+        int budget = tokenBudget * CHARS_PER_TOKEN;
+        if (text.length() <= budget) {
+            return text;
+        }
+
+        CompilationUnit cu;
+        try {
+            cu = testSource.compilationUnit();
+        } catch (RuntimeException e) {
+            // Does not parse: nothing to summarize structurally
+            return text;
+        }
+
+        String simpleClass = simpleName(mutatedClass);
+        String target = targetName(mutatedMethod);
+        List<TestMethod> tests = new ArrayList<>();
+        for (MethodDeclaration method : cu.findAll(MethodDeclaration.class)) {
+            if (!isTest(method) || method.getBody().isEmpty()) {
+                continue;
+            }
+            BlockStmt body = method.getBody().get();
+            if (body.getBegin().isEmpty() || body.getEnd().isEmpty()) {
+                continue;
+            }
+            int begin = offset(testSource, body.getBegin().get());
+            int end = offset(testSource, body.getEnd().get()) + 1;
+            tests.add(new TestMethod(begin, end, relevance(method, simpleClass, target)));
+        }
+        if (tests.isEmpty()) {
+            return text;
+        }
+
+        // Most relevant first; ties keep source order
+        List<TestMethod> ranked = new ArrayList<>(tests);
+        ranked.sort(Comparator.comparingInt(TestMethod::relevance).reversed());
+
+        int length = text.length();
+        for (TestMethod test : ranked) {
+            test.elided = true;
+            length -= test.savings();
+        }
+        // Restore the most relevant bodies that fit
+        for (int i = 0; i < Math.min(relevantTests, ranked.size()); i++) {
+            TestMethod test = ranked.get(i);
+            if (test.relevance() > 0 && length + test.savings() <= budget) {
+                test.elided = false;
+                length += test.savings();
+            }
+        }
+
+        StringBuilder summary = new StringBuilder(length);
+        int copied = 0;
+        for (TestMethod test : tests) {
+            if (test.elided) {
+                summary.append(text, copied, test.begin()).append(ELIDED_BODY);
+                copied = test.end();
+            }
+        }
+        summary.append(text, copied, text.length());
+        return summary.toString();
+    }
+
+    /**
+     * Weighted references in a method to a mutated method (or, for constructors and initializers,
+     * to its class), given by PIT's class and method names; 0 if it does not refer to it.
+     */
+    public static int references(MethodDeclaration method, String mutatedClass, String mutatedMethod) {
+        return relevance(method, simpleName(mutatedClass), targetName(mutatedMethod));
+    }
+
+    /**
+     * Weighted references to the mutated method (or class) in a test.
+     */
+    private static int relevance(MethodDeclaration test, String simpleClass, String target) {
+        int score = 0;
+        if (target == null) {
+            // Constructor or static initializer: anything touching the class counts
+            for (ObjectCreationExpr creation : test.findAll(ObjectCreationExpr.class)) {
+                if (creation.getType().getNameAsString().equals(simpleClass)) {
+                    score += 3;
+                }
+            }
+            for (NameExpr name : test.findAll(NameExpr.class)) {
+                if (name.getNameAsString().equals(simpleClass)) {
+                    score++;
+                }
+            }
+            return score;
+        }
+        for (MethodCallExpr call : test.findAll(MethodCallExpr.class)) {
+            if (call.getNameAsString().equals(target)) {
+                score += 3;
+            }
+        }
+        for (MethodReferenceExpr reference : test.findAll(MethodReferenceExpr.class)) {
+            if (reference.getIdentifier().equals(target)) {
+                score += 3;
+            }
+        }
+        if (test.getNameAsString().toLowerCase().contains(target.toLowerCase())) {
+            score++;
+        }
+        return score;
+    }
+
+    /**
+     * Whether a method is annotated as a JUnit or jqwik test.
+     */
+    public static boolean isTest(MethodDeclaration method) {
+        return method.getAnnotations().stream()
+            .anyMatch(annotation -> TEST_ANNOTATIONS.contains(annotation.getName().getIdentifier()));
+    }
+
+    /**
+     * The source-level method name for PIT's JVM name; null for constructors and initializers.
+     */
+    private static String targetName(String mutatedMethod) {
+        if (mutatedMethod == null || mutatedMethod.startsWith("<")) {
+            return null;
+        }
+        if (mutatedMethod.startsWith("lambda$")) {
+            // lambda$withdraw$0 -> withdraw
+            String[] parts = mutatedMethod.split("\\$");
+            return parts.length > 1 && !parts[1].startsWith("static") ? parts[1] : null;
+        }
+        return mutatedMethod;
+    }
+
+    private static String simpleName(String className) {
+        String name = className.substring(className.lastIndexOf('.') + 1);
+        return name.substring(name.lastIndexOf('$') + 1);
+    }
+
+    private static int offset(SourceCache.ParsedSource source, Position position) {
+        return source.lines().lineStart(position.line) + position.column - 1;
+    }
+
+    private static final class TestMethod {
+        private final int begin;
+        private final int end;
+        private final int relevance;
+        boolean elided;
+
+        TestMethod(int begin, int end, int relevance) {
+            this.begin = begin;
+            this.end = end;
+            this.relevance = relevance;
+        }
+
+        int begin() {
+            return begin;
+        }
+
+        int end() {
+            return end;
+        }
+
+        int relevance() {
+            return relevance;
+        }
+
+        /** Characters saved by eliding the body. */
+        int savings() {
+            return end - begin - ELIDED_BODY.length();
+        }
+    }
+}
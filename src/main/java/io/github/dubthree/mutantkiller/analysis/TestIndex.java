@@ -0,0 +1,171 @@
+package io.github.dubthree.mutantkiller.analysis;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Reverse index from production classes to the test classes that exercise them.
+ *
+ * <p>Built from the imports and type references that {@link SourceIndex} recorded for each test
+ * file. Names are resolved the way the compiler would look them up: explicit imports, then the
+ * test's own package, then wildcard imports, keeping only names that are production types.
+ * Tests are ranked by reference density, i.e. the share of a test file's production references
+ * that point at the class, so a dedicated {@code FooIT} outranks a shared fixture that mentions
+ * {@code Foo} once.
+ */
+public final class TestIndex {
+
+    /**
+     * A test file that refers to a production class.
+     *
+     * @param references weighted number of references to the class
+     * @param density share of the file's production references that point at the class
+     */
+    public record TestMatch(String testClass, Path file, int references, double density) {
+    }
+
+    private static final Comparator<TestMatch> RANKING = Comparator
+        .comparingDouble(TestMatch::density).reversed()
+        .thenComparing(Comparator.comparingInt(TestMatch::references).reversed())
+        .thenComparing(TestMatch::testClass);
+
+    /** Production type name, then test file, to weighted references. */
+    private final Map<String, Map<Path, Integer>> references = new HashMap<>();
+    private final Map<Path, Integer> fileTotals = new HashMap<>();
+    private final Map<Path, String> testClasses = new HashMap<>();
+
+    private TestIndex() {
+    }
+
+    /**
+     * Resolve the references of every test file in the source index.
+     */
+    public static TestIndex of(SourceIndex sourceIndex) {
+        TestIndex index = new TestIndex();
+        for (SourceIndex.FileEntry file : sourceIndex.files()) {
+            if (file.test() && !file.types().isEmpty()) {
+                index.add(sourceIndex, file);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Test files referring to the class or to a class enclosing it, best match first.
+     */
+    public List<TestMatch> testsFor(String className) {
+        Map<Path, Integer> counts = new LinkedHashMap<>();
+        String name = className;
+        while (true) {
+            Map<Path, Integer> direct = references.get(name);
+            if (direct != null) {
+                direct.forEach((file, count) -> counts.merge(file, count, Integer::sum));
+            }
+            int nested = name.lastIndexOf('$');
+            if (nested < 0) {
+                break;
+            }
+            name = name.substring(0, nested);
+        }
+
+        List<TestMatch> matches = new ArrayList<>(counts.size());
+        counts.forEach((file, count) -> matches.add(
+            new TestMatch(testClasses.get(file), file, count, (double) count / fileTotals.get(file))));
+        matches.sort(RANKING);
+        return matches;
+    }
+
+    /**
+     * The test file most focused on the class, if any test refers to it.
+     */
+    public Optional<Path> bestTestFile(String className) {
+        return testsFor(className).stream().findFirst().map(TestMatch::file);
+    }
+
+    /**
+     * Number of production classes referenced by at least one test.
+     */
+    public int size() {
+        return references.size();
+    }
+
+    private void add(SourceIndex sourceIndex, SourceIndex.FileEntry file) {
+        Map<String, String> explicitImports = new HashMap<>();
+        List<String> wildcardImports = new ArrayList<>();
+        for (String imported : file.imports()) {
+            if (imported.endsWith(".*")) {
+                wildcardImports.add(imported.substring(0, imported.length() - 2));
+            } else {
+                explicitImports.put(imported.substring(imported.lastIndexOf('.') + 1), imported);
+            }
+        }
+
+        Map<String, Integer> resolved = new HashMap<>();
+        file.references().forEach((name, count) -> {
+            String typeName = resolve(sourceIndex, name, file.packageName(), explicitImports, wildcardImports);
+            if (typeName != null) {
+                resolved.merge(typeName, count, Integer::sum);
+            }
+        });
+        if (resolved.isEmpty()) {
+            return;
+        }
+
+        int total = resolved.values().stream().mapToInt(Integer::intValue).sum();
+        fileTotals.put(file.path(), total);
+        testClasses.put(file.path(), primaryType(file));
+        resolved.forEach((typeName, count) ->
+            references.computeIfAbsent(typeName, key -> new HashMap<>()).put(file.path(), count));
+    }
+
+    /**
+     * Resolve a name as written in a test file to a production type, or null.
+     */
+    private static String resolve(SourceIndex sourceIndex, String name, String packageName,
+                                  Map<String, String> explicitImports, List<String> wildcardImports) {
+        int dot = name.indexOf('.');
+        String head = dot >= 0 ? name.substring(0, dot) : name;
+        String rest = dot >= 0 ? name.substring(dot) : "";
+
+        List<String> candidates = new ArrayList<>(wildcardImports.size() + 3);
+        String imported = explicitImports.get(head);
+        if (imported != null) {
+            candidates.add(imported + rest);
+        }
+        candidates.add(packageName.isEmpty() ? name : packageName + "." + name);
+        for (String wildcard : wildcardImports) {
+            candidates.add(wildcard + "." + name);
+        }
+        if (dot >= 0) {
+            // Already fully qualified
+            candidates.add(name);
+        }
+
+        for (String candidate : candidates) {
+            Optional<SourceIndex.TypeLocation> location = sourceIndex.findSource(candidate);
+            if (location.isPresent()) {
+                return location.get().typeName();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The public or file-named top-level type of a test file.
+     */
+    private static String primaryType(SourceIndex.FileEntry file) {
+        String fileName = file.path().getFileName().toString();
+        String simpleName = fileName.substring(0, fileName.length() - ".java".length());
+        return file.types().stream()
+            .map(SourceIndex.TypeEntry::name)
+            .filter(name -> name.equals(simpleName) || name.endsWith("." + simpleName))
+            .findFirst()
+            .orElse(file.types().get(0).name());
+    }
+}
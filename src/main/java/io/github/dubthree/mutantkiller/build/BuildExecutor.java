@@ -1,20 +1,30 @@
 package io.github.dubthree.mutantkiller.build;
 
+import io.github.dubthree.mutantkiller.pit.ModuleReport;
+
 import java.io.BufferedReader;
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 /**
  * Executes build commands and mutation testing for Maven or Gradle projects.
  */
 public abstract class BuildExecutor {
 
+    private static final Set<String> SKIPPED_DIRS = Set.of(".git", ".gradle", ".idea", ".mvn", "node_modules", "src");
+    private static final Set<String> BUILD_OUTPUT_DIRS = Set.of("target", "build");
+
     protected final Path projectDir;
 
     protected BuildExecutor(Path projectDir) {
@@ -41,19 +51,129 @@ public abstract class BuildExecutor {
     public abstract String name();
 
     /**
-     * Run mutation testing and return the path to the mutations report.
+     * Run mutation testing and return the mutations reports of all modules.
+     */
+    public abstract List<ModuleReport> runMutationTesting() throws IOException, InterruptedException;
+
+    /**
+     * Get the PIT reports directory of a module, relative to the module directory.
+     */
+    protected abstract Path reportsDir();
+
+    /**
+     * Get the main source directory of a module.
      */
-    public abstract File runMutationTesting() throws IOException, InterruptedException;
+    public abstract Path sourceDir(Path moduleDir);
+
+    /**
+     * Get the test source directory of a module.
+     */
+    public abstract Path testDir(Path moduleDir);
+
+    /**
+     * Get the directory holding generated sources of a module (annotation processors etc.).
+     */
+    public abstract Path generatedSourceDir(Path moduleDir);
+
+    /**
+     * Get the generated source directories of a module that exist.
+     */
+    public List<Path> generatedSourceDirs(Path moduleDir) {
+        Path generated = generatedSourceDir(moduleDir);
+        return Files.isDirectory(generated) ? List.of(generated) : List.of();
+    }
 
     /**
      * Get the main source directory.
      */
-    public abstract Path sourceDir();
+    public Path sourceDir() {
+        return sourceDir(projectDir);
+    }
 
     /**
      * Get the test source directory.
      */
-    public abstract Path testDir();
+    public Path testDir() {
+        return testDir(projectDir);
+    }
+
+    /**
+     * Find the mutations.xml of every module under the project directory.
+     *
+     * <p>A report in a module without its own sources (e.g. from PIT's {@code report-aggregate})
+     * is marked as aggregate. Aggregate reports repeat the per-module mutations, so they are only
+     * returned when no per-module report exists.
+     */
+    public List<ModuleReport> findMutationReports() throws IOException {
+        Path reportsDir = reportsDir();
+        List<ModuleReport> reports = new ArrayList<>();
+
+        Files.walkFileTree(projectDir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                String name = dir.getFileName() != null ? dir.getFileName().toString() : "";
+                if (!dir.equals(projectDir) && SKIPPED_DIRS.contains(name)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                if (dir.endsWith(reportsDir)) {
+                    Path moduleDir = dir;
+                    for (int i = 0; i < reportsDir.getNameCount(); i++) {
+                        moduleDir = moduleDir.getParent();
+                    }
+                    Path report = latestReport(dir);
+                    if (report != null) {
+                        String module = projectDir.equals(moduleDir) ? "." : projectDir.relativize(moduleDir).toString();
+                        boolean aggregate = !Files.isDirectory(sourceDir(moduleDir));
+                        reports.add(new ModuleReport(module, moduleDir, report.toFile(), aggregate));
+                    }
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        reports.sort(Comparator.comparing(ModuleReport::module));
+        List<ModuleReport> perModule = reports.stream().filter(r -> !r.aggregate()).toList();
+        return perModule.isEmpty() ? reports : perModule;
+    }
+
+    /**
+     * Find all module directories that have main sources.
+     */
+    public List<Path> moduleDirs() throws IOException {
+        List<Path> moduleDirs = new ArrayList<>();
+        Files.walkFileTree(projectDir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                String name = dir.getFileName() != null ? dir.getFileName().toString() : "";
+                if (!dir.equals(projectDir) && (SKIPPED_DIRS.contains(name) || BUILD_OUTPUT_DIRS.contains(name))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                if (Files.isDirectory(sourceDir(dir))) {
+                    moduleDirs.add(dir);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        moduleDirs.sort(Comparator.naturalOrder());
+        return moduleDirs;
+    }
+
+    /**
+     * The report directly in the reports directory, or the most recent timestamped one.
+     */
+    private static Path latestReport(Path reportsDir) throws IOException {
+        Path direct = reportsDir.resolve("mutations.xml");
+        if (Files.isRegularFile(direct)) {
+            return direct;
+        }
+        try (Stream<Path> files = Files.walk(reportsDir)) {
+            return files
+                .filter(file -> file.getFileName().toString().equals("mutations.xml"))
+                .max(Comparator.naturalOrder())
+                .orElse(null);
+        }
+    }
 
     /**
      * Execute a command in the project directory.
@@ -98,7 +218,7 @@ public abstract class BuildExecutor {
         }
 
         @Override
-        public File runMutationTesting() throws IOException, InterruptedException {
+        public List<ModuleReport> runMutationTesting() throws IOException, InterruptedException {
             // First, ensure PIT plugin is configured or use command line
             List<String> command = new ArrayList<>();
             
@@ -121,43 +241,27 @@ public abstract class BuildExecutor {
                 throw new IOException("Maven PIT execution failed with exit code " + exitCode);
             }
 
-            // Find the mutations.xml report
-            Path pitReportsDir = projectDir.resolve("target/pit-reports");
-            if (Files.exists(pitReportsDir)) {
-                File mutationsXml = pitReportsDir.resolve("mutations.xml").toFile();
-                if (mutationsXml.exists()) {
-                    return mutationsXml;
-                }
-                // Try to find in subdirectories (timestamped reports)
-                return findMutationsXml(pitReportsDir.toFile());
-            }
-            return null;
+            return findMutationReports();
         }
 
         @Override
-        public Path sourceDir() {
-            return projectDir.resolve("src/main/java");
+        protected Path reportsDir() {
+            return Path.of("target", "pit-reports");
         }
 
         @Override
-        public Path testDir() {
-            return projectDir.resolve("src/test/java");
+        public Path sourceDir(Path moduleDir) {
+            return moduleDir.resolve("src/main/java");
         }
 
-        private File findMutationsXml(File dir) {
-            File[] files = dir.listFiles();
-            if (files == null) return null;
-            
-            for (File file : files) {
-                if (file.getName().equals("mutations.xml")) {
-                    return file;
-                }
-                if (file.isDirectory()) {
-                    File found = findMutationsXml(file);
-                    if (found != null) return found;
-                }
-            }
-            return null;
+        @Override
+        public Path testDir(Path moduleDir) {
+            return moduleDir.resolve("src/test/java");
+        }
+
+        @Override
+        public Path generatedSourceDir(Path moduleDir) {
+            return moduleDir.resolve("target/generated-sources");
         }
     }
 
@@ -176,7 +280,7 @@ public abstract class BuildExecutor {
         }
 
         @Override
-        public File runMutationTesting() throws IOException, InterruptedException {
+        public List<ModuleReport> runMutationTesting() throws IOException, InterruptedException {
             List<String> command = new ArrayList<>();
             
             // Use gradlew if available, otherwise gradle
@@ -196,42 +300,27 @@ public abstract class BuildExecutor {
                 throw new IOException("Gradle PIT execution failed with exit code " + exitCode);
             }
 
-            // Find the mutations.xml report
-            Path pitReportsDir = projectDir.resolve("build/reports/pitest");
-            if (Files.exists(pitReportsDir)) {
-                File mutationsXml = pitReportsDir.resolve("mutations.xml").toFile();
-                if (mutationsXml.exists()) {
-                    return mutationsXml;
-                }
-                return findMutationsXml(pitReportsDir.toFile());
-            }
-            return null;
+            return findMutationReports();
         }
 
         @Override
-        public Path sourceDir() {
-            return projectDir.resolve("src/main/java");
+        protected Path reportsDir() {
+            return Path.of("build", "reports", "pitest");
         }
 
         @Override
-        public Path testDir() {
-            return projectDir.resolve("src/test/java");
+        public Path sourceDir(Path moduleDir) {
+            return moduleDir.resolve("src/main/java");
         }
 
-        private File findMutationsXml(File dir) {
-            File[] files = dir.listFiles();
-            if (files == null) return null;
-            
-            for (File file : files) {
-                if (file.getName().equals("mutations.xml")) {
-                    return file;
-                }
-                if (file.isDirectory()) {
-                    File found = findMutationsXml(file);
-                    if (found != null) return found;
-                }
-            }
-            return null;
+        @Override
+        public Path testDir(Path moduleDir) {
+            return moduleDir.resolve("src/test/java");
+        }
+
+        @Override
+        public Path generatedSourceDir(Path moduleDir) {
+            return moduleDir.resolve("build/generated/sources");
         }
     }
 }
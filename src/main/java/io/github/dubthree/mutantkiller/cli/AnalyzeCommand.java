@@ -1,12 +1,16 @@
 package io.github.dubthree.mutantkiller.cli;
 
 import io.github.dubthree.mutantkiller.pit.PitReportParser;
+import io.github.dubthree.mutantkiller.pit.MutationReportCache;
 import io.github.dubthree.mutantkiller.pit.MutationResult;
+import io.github.dubthree.mutantkiller.pit.MutationStats;
+import io.github.dubthree.mutantkiller.pit.MutationTable;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
 import java.io.File;
+import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.Callable;
 
@@ -19,45 +23,84 @@ import java.util.concurrent.Callable;
 )
 public class AnalyzeCommand implements Callable<Integer> {
 
-    @Parameters(index = "0", description = "Path to PIT mutations.xml report")
+    @Parameters(index = "0", description = "Path to PIT mutations.xml report (plain, .gz, .zip, .tar or .tar.gz; - for stdin)")
     private File reportFile;
 
     @Option(names = {"-v", "--verbose"}, description = "Show detailed mutation info")
     private boolean verbose;
 
+    @Option(names = {"--cache"}, description = "Cache the parsed report next to it (<report>.mkcache) and reuse it on later runs")
+    private boolean cache;
+
     @Option(names = {"--survived-only"}, description = "Only show survived mutations", defaultValue = "true")
     private boolean survivedOnly;
 
+    @Option(names = {"--stats"}, description = "Show survival rates per package, class, method and mutator instead of individual mutants")
+    private boolean stats;
+
+    @Option(names = {"--top"}, description = "Number of rows in the class, method and weakest-class views", defaultValue = "10")
+    private int top;
+
     @Override
     public Integer call() throws Exception {
-        if (!reportFile.exists()) {
+        if (!PitReportParser.exists(reportFile)) {
             System.err.println("Report file not found: " + reportFile);
             return 1;
         }
 
         PitReportParser parser = new PitReportParser();
-        List<MutationResult> mutations = parser.parse(reportFile);
-
-        List<MutationResult> toShow = survivedOnly 
-            ? mutations.stream().filter(MutationResult::survived).toList()
-            : mutations;
+        MutationTable mutations = cache
+            ? new MutationReportCache(parser).open(reportFile)
+            : parser.parseTable(reportFile);
+        MutationStats summary = MutationStats.compute(mutations);
+        long survived = summary.survived();
 
         System.out.println("=== Mutation Analysis ===");
-        System.out.println("Total mutations: " + mutations.size());
-        System.out.println("Survived: " + mutations.stream().filter(MutationResult::survived).count());
-        System.out.println("Killed: " + mutations.stream().filter(m -> !m.survived()).count());
+        System.out.println("Total mutations: " + summary.total());
+        System.out.println("Survived: " + survived);
+        System.out.println("Killed: " + (summary.total() - survived));
         System.out.println();
 
-        if (!toShow.isEmpty()) {
+        if (stats) {
+            printStats(summary);
+            return 0;
+        }
+
+        if (survivedOnly ? survived > 0 : !mutations.isEmpty()) {
             System.out.println("=== " + (survivedOnly ? "Surviving" : "All") + " Mutants ===");
-            for (MutationResult mutation : toShow) {
-                printMutation(mutation);
-            }
+            (survivedOnly ? mutations.survivors() : mutations.stream()).forEach(this::printMutation);
         }
 
         return 0;
     }
 
+    private void printStats(MutationStats summary) {
+        printTallies("Survival by Package", summary.byPackage());
+        printTallies("Survival by Mutator", summary.byMutator().stream()
+            .sorted(Comparator.comparingLong(MutationStats.Tally::survived).reversed())
+            .toList());
+        printTallies("Top " + top + " Classes by Survivors", mostSurvivors(summary.byClass()));
+        printTallies("Top " + top + " Methods by Survivors", mostSurvivors(summary.byMethod()));
+        printTallies("Top " + top + " Weakest Classes", summary.weakestClasses(top));
+    }
+
+    private List<MutationStats.Tally> mostSurvivors(List<MutationStats.Tally> tallies) {
+        return tallies.stream()
+            .filter(tally -> tally.survived() > 0)
+            .sorted(Comparator.comparingLong(MutationStats.Tally::survived).reversed())
+            .limit(top)
+            .toList();
+    }
+
+    private void printTallies(String title, List<MutationStats.Tally> tallies) {
+        System.out.println("=== " + title + " ===");
+        for (MutationStats.Tally tally : tallies) {
+            System.out.printf("%6.1f%%  %7d / %-7d  %s%n",
+                tally.survivalRate() * 100, tally.survived(), tally.total(), tally.name());
+        }
+        System.out.println();
+    }
+
     private void printMutation(MutationResult mutation) {
         System.out.println("---");
         System.out.println("Class: " + mutation.mutatedClass());
@@ -0,0 +1,95 @@
+package io.github.dubthree.mutantkiller.cli;
+
+import io.github.dubthree.mutantkiller.pit.MutationResult;
+import io.github.dubthree.mutantkiller.pit.PitReportParser;
+import io.github.dubthree.mutantkiller.pit.PitReportWriter;
+import io.github.dubthree.mutantkiller.pit.ReportDiff;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.stream.Stream;
+
+/**
+ * Compares two PIT reports and lists only the survivors that are new since the baseline.
+ */
+@Command(
+    name = "diff",
+    description = "Compare a PIT report against a baseline and list mutants that newly survived or moved"
+)
+public class DiffCommand implements Callable<Integer> {
+
+    @Parameters(index = "0", description = "Path to the baseline PIT mutations.xml report")
+    private File baselineFile;
+
+    @Parameters(index = "1", description = "Path to the current PIT mutations.xml report (plain, .gz, .zip, .tar or .tar.gz; - for stdin)")
+    private File reportFile;
+
+    @Option(names = {"-o", "--output"}, description = "Write the changed survivors to a mutations.xml for the kill command")
+    private File outputFile;
+
+    @Option(names = {"-v", "--verbose"}, description = "Show detailed mutation info")
+    private boolean verbose;
+
+    @Override
+    public Integer call() throws Exception {
+        if (!PitReportParser.exists(baselineFile)) {
+            System.err.println("Baseline report not found: " + baselineFile);
+            return 1;
+        }
+        if (!PitReportParser.exists(reportFile)) {
+            System.err.println("Report file not found: " + reportFile);
+            return 1;
+        }
+
+        PitReportParser parser = new PitReportParser();
+        List<ReportDiff.Entry> changes;
+        try (Stream<MutationResult> baseline = parser.stream(baselineFile);
+             Stream<MutationResult> current = parser.stream(reportFile)) {
+            changes = ReportDiff.compare(baseline, current);
+        }
+
+        System.out.println("=== Mutation Diff ===");
+        System.out.println("New survivors: " + count(changes, ReportDiff.Change.NEW));
+        System.out.println("Newly survived: " + count(changes, ReportDiff.Change.NEWLY_SURVIVED));
+        System.out.println("Moved: " + count(changes, ReportDiff.Change.MOVED));
+        System.out.println();
+
+        if (!changes.isEmpty()) {
+            System.out.println("=== Changed Survivors ===");
+            for (ReportDiff.Entry change : changes) {
+                printChange(change);
+            }
+        }
+
+        if (outputFile != null) {
+            new PitReportWriter().write(changes.stream().map(ReportDiff.Entry::mutation).toList(), outputFile);
+            System.out.println();
+            System.out.println("Wrote " + changes.size() + " mutants to " + outputFile);
+        }
+
+        return 0;
+    }
+
+    private long count(List<ReportDiff.Entry> changes, ReportDiff.Change change) {
+        return changes.stream().filter(entry -> entry.change() == change).count();
+    }
+
+    private void printChange(ReportDiff.Entry change) {
+        MutationResult mutation = change.mutation();
+        System.out.println("---");
+        System.out.println("Class: " + mutation.mutatedClass());
+        System.out.println("Method: " + mutation.mutatedMethod());
+        System.out.println("Line: " + mutation.lineNumber()
+            + (change.change() == ReportDiff.Change.MOVED ? " (was " + change.previousLine() + ")" : ""));
+        System.out.println("Mutator: " + mutation.mutator());
+        if (verbose) {
+            System.out.println("Description: " + mutation.description());
+            System.out.println("Status: " + mutation.status());
+        }
+        System.out.println("Change: " + change.change());
+    }
+}
@@ -0,0 +1,241 @@
+package io.github.dubthree.mutantkiller.cli;
+
+import io.github.dubthree.mutantkiller.analysis.MutantGroup;
+import io.github.dubthree.mutantkiller.analysis.MutantGrouper;
+import io.github.dubthree.mutantkiller.codegen.BatchGeneration;
+import io.github.dubthree.mutantkiller.codegen.FakeLlmServer;
+import io.github.dubthree.mutantkiller.codegen.GenerationEngine;
+import io.github.dubthree.mutantkiller.codegen.ResponseCache;
+import io.github.dubthree.mutantkiller.codegen.TestImprover;
+import io.github.dubthree.mutantkiller.config.MutantKillerConfig;
+import picocli.CommandLine.Option;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Shared options for analyzing mutants and generating tests with the model: prompt contents,
+ * grouping, concurrency and rate limits, caching, and which API answers.
+ */
+public class GenerationOptions {
+
+    @Option(names = {"--model"}, description = "LLM model to use", defaultValue = "claude-sonnet-4-20250514")
+    private String model;
+
+    @Option(names = {"--prompt-dir"}, description = "Directory containing custom prompt templates")
+    private File promptDir;
+
+    @Option(names = {"--context-lines"}, description = "Lines of source shown before and after the mutated line", defaultValue = "5")
+    private int contextLines;
+
+    @Option(names = {"--slice-tokens"}, description = "Token budget for declarations the mutated method uses (0 to leave them out)", defaultValue = "1500")
+    private int sliceTokens;
+
+    @Option(names = {"--test-tokens"}, description = "Token budget for the existing test class; larger ones are summarized (0 to send it whole)", defaultValue = "4000")
+    private int testTokens;
+
+    @Option(names = {"--concurrency"}, description = "Maximum number of concurrent API requests", defaultValue = "8")
+    private int concurrency;
+
+    @Option(names = {"--requests-per-minute"}, description = "API request rate limit, until the server reports its own", defaultValue = "50")
+    private int requestsPerMinute;
+
+    @Option(names = {"--tokens-per-minute"}, description = "API input token rate limit, until the server reports its own", defaultValue = "30000")
+    private int tokensPerMinute;
+
+    @Option(names = {"--response-cache-days"}, description = "Reuse model responses to identical prompts for this many days (0 to always ask)", defaultValue = "7")
+    private int responseCacheDays;
+
+    @Option(names = {"--group-size"}, description = "Maximum number of mutants in one method to kill with one request (1 to send each alone)", defaultValue = "8")
+    private int groupSize;
+
+    @Option(names = {"--group-lines"}, description = "Maximum distance in lines between mutants grouped into one request", defaultValue = "5")
+    private int groupLines;
+
+    @Option(names = {"--candidates"}, description = "Generate this many diverse tests at once per mutant and take the first that passes verification", defaultValue = "1")
+    private int candidates;
+
+    @Option(names = {"--stream"}, description = "Stream responses and stop reading as soon as the test code is complete")
+    private boolean stream;
+
+    @Option(names = {"--fence-tokens"}, description = "With --stream, give up on a response that has no code block after this many tokens (0 to never give up)", defaultValue = "400")
+    private int fenceTokens;
+
+    @Option(names = {"--batch"}, description = "Send all requests as one message batch: half the cost, but results may take hours")
+    private boolean batch;
+
+    @Option(names = {"--base-url"}, description = "API base URL, e.g. for a proxy")
+    private String baseUrl;
+
+    @Option(names = {"--record"}, description = "Record model responses in this directory, to replay them later")
+    private File recordDir;
+
+    @Option(names = {"--replay"}, description = "Answer from responses recorded with --record instead of the API")
+    private File replayDir;
+
+    @Option(names = {"--fake-llm"}, description = "Answer from a local fake API, e.g. 'latency=800ms,jitter=300ms,429=0.05,529=0.01,concurrency=16,seed=42'")
+    private String fakeLlmSpec;
+
+    private FakeLlmServer.Options fakeLlmOptions;
+
+    /** The running fake API, if --fake-llm was given. */
+    private FakeLlmServer fakeLlm;
+
+    /**
+     * Check the options, printing what is wrong.
+     *
+     * @return whether the options are valid
+     */
+    public boolean validate() {
+        if (contextLines < 0) {
+            System.err.println("--context-lines must not be negative: " + contextLines);
+            return false;
+        }
+        if (sliceTokens < 0) {
+            System.err.println("--slice-tokens must not be negative: " + sliceTokens);
+            return false;
+        }
+        if (testTokens < 0) {
+            System.err.println("--test-tokens must not be negative: " + testTokens);
+            return false;
+        }
+        if (concurrency < 1 || requestsPerMinute < 1 || tokensPerMinute < 1) {
+            System.err.println("--concurrency, --requests-per-minute and --tokens-per-minute must be at least 1");
+            return false;
+        }
+        if (responseCacheDays < 0) {
+            System.err.println("--response-cache-days must not be negative: " + responseCacheDays);
+            return false;
+        }
+        if (groupSize < 1 || groupLines < 0) {
+            System.err.println("--group-size must be at least 1 and --group-lines must not be negative");
+            return false;
+        }
+        if (candidates < 1 || candidates > MutantKillerConfig.MAX_CANDIDATES) {
+            System.err.println("--candidates must be between 1 and " + MutantKillerConfig.MAX_CANDIDATES + ": " + candidates);
+            return false;
+        }
+        if (fenceTokens < 0) {
+            System.err.println("--fence-tokens must not be negative: " + fenceTokens);
+            return false;
+        }
+        if (recordDir != null && replayDir != null) {
+            System.err.println("--record and --replay cannot be used together");
+            return false;
+        }
+        if (replayDir != null && !replayDir.isDirectory()) {
+            System.err.println("Replay directory not found: " + replayDir);
+            return false;
+        }
+        if (replayDir != null && batch) {
+            System.err.println("--batch cannot be replayed");
+            return false;
+        }
+        if (batch && (candidates > 1 || stream)) {
+            // A batch holds one plain request per group, and its results are not streamed
+            System.err.println("--batch cannot be used with --candidates or --stream");
+            return false;
+        }
+        if (fakeLlmSpec != null && (baseUrl != null || replayDir != null)) {
+            System.err.println("--fake-llm cannot be used with --base-url or --replay");
+            return false;
+        }
+        if (fakeLlmSpec != null) {
+            try {
+                fakeLlmOptions = FakeLlmServer.Options.parse(fakeLlmSpec);
+            } catch (IllegalArgumentException e) {
+                System.err.println("Invalid --fake-llm: " + e.getMessage());
+                return false;
+            }
+        }
+        if (promptDir != null && !promptDir.isDirectory()) {
+            System.err.println("Prompt directory not found: " + promptDir);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Run a command, with the fake API started for its duration if --fake-llm was given.
+     */
+    public int run(Callable<Integer> command) throws Exception {
+        if (fakeLlmOptions == null) {
+            return command.call();
+        }
+        try (FakeLlmServer server = FakeLlmServer.start(fakeLlmOptions)) {
+            System.out.println("Using fake API at " + server.baseUrl());
+            fakeLlm = server;
+            return command.call();
+        } finally {
+            fakeLlm = null;
+        }
+    }
+
+    /**
+     * Set the generation settings on a config; the caller sets the directories, dry run and verbosity.
+     */
+    public MutantKillerConfig.Builder applyTo(MutantKillerConfig.Builder builder) {
+        return builder
+            .model(model)
+            .promptDir(promptDir != null ? promptDir.toPath() : null)
+            .contextLines(contextLines)
+            .sliceTokens(sliceTokens)
+            .testTokens(testTokens)
+            .maxInFlight(concurrency)
+            .requestsPerMinute(requestsPerMinute)
+            .tokensPerMinute(tokensPerMinute)
+            .responseCacheTtl(Duration.ofDays(responseCacheDays))
+            .apiKey(fakeLlm != null || replayDir != null ? "offline" : null)
+            .baseUrl(fakeLlm != null ? fakeLlm.baseUrl() : baseUrl)
+            .recordDir(recordDir != null ? recordDir.toPath() : null)
+            .replayDir(replayDir != null ? replayDir.toPath() : null)
+            .stream(stream)
+            .fenceTokens(fenceTokens)
+            .candidates(candidates);
+    }
+
+    public MutantGrouper grouper() {
+        return new MutantGrouper(groupSize, groupLines);
+    }
+
+    /**
+     * Generate improvements for all groups, as one message batch if --batch was given, otherwise
+     * concurrently through the engine. Completions are in the order they arrive.
+     */
+    public <T> Iterable<GenerationEngine.Completion<T>> generate(Map<T, MutantGroup> work, GenerationEngine engine,
+                                                                 TestImprover improver, MutantKillerConfig config)
+            throws IOException, InterruptedException {
+        return batch
+            ? new BatchGeneration(improver, config).generateAll(work)
+            : engine.submitAll(work);
+    }
+
+    /**
+     * Print the engine's request, token and cache counts, for verbose output.
+     */
+    public void printStats(GenerationEngine engine, TestImprover improver) {
+        System.out.println("Generation: " + engine.requests() + " requests, " + engine.retries() + " retries ("
+            + engine.throttled() + " throttled), " + engine.inputTokens() + " input / "
+            + engine.outputTokens() + " output tokens, final concurrency " + engine.concurrency());
+        if (stream) {
+            System.out.println("Streaming: " + engine.stoppedEarly() + " responses stopped early");
+        }
+        if (candidates > 1) {
+            System.out.println("Speculation: " + engine.rejected() + " candidates failed verification");
+        }
+        System.out.println("Prompt cache: " + engine.cacheReadTokens() + " tokens read, "
+            + engine.cacheWriteTokens() + " written");
+        if (fakeLlm != null) {
+            System.out.println("Fake API: " + fakeLlm.requests() + " requests, " + fakeLlm.errors()
+                + " errors, peak concurrency " + fakeLlm.peakInFlight());
+        }
+        ResponseCache responses = improver.responseCache();
+        if (responses != null) {
+            System.out.println("Response cache: " + responses.hits() + " hits, " + responses.misses() + " misses, "
+                + responses.evictions() + " evicted");
+        }
+    }
+}
@@ -1,17 +1,28 @@
 package io.github.dubthree.mutantkiller.cli;
 
+import io.github.dubthree.mutantkiller.analysis.MutantAnalysis;
 import io.github.dubthree.mutantkiller.analysis.MutantAnalyzer;
+import io.github.dubthree.mutantkiller.analysis.MutantGroup;
+import io.github.dubthree.mutantkiller.analysis.SourceIndex;
+import io.github.dubthree.mutantkiller.codegen.GenerationEngine;
 import io.github.dubthree.mutantkiller.codegen.TestImprover;
 import io.github.dubthree.mutantkiller.config.MutantKillerConfig;
+import io.github.dubthree.mutantkiller.pit.MutationFilter;
+import io.github.dubthree.mutantkiller.pit.MutationReportCache;
 import io.github.dubthree.mutantkiller.pit.MutationResult;
 import io.github.dubthree.mutantkiller.pit.PitReportParser;
+import io.github.dubthree.mutantkiller.pit.ReportDiff;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
 import java.io.File;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.stream.Stream;
 
 /**
  * The main command - analyzes surviving mutants and generates test improvements.
@@ -22,7 +33,7 @@ import java.util.concurrent.Callable;
 )
 public class KillCommand implements Callable<Integer> {
 
-    @Parameters(index = "0", description = "Path to PIT mutations.xml report")
+    @Parameters(index = "0", description = "Path to PIT mutations.xml report (plain, .gz, .zip, .tar or .tar.gz; - for stdin)")
     private File reportFile;
 
     @Option(names = {"-s", "--source"}, description = "Source directory", required = true)
@@ -31,8 +42,8 @@ public class KillCommand implements Callable<Integer> {
     @Option(names = {"-t", "--test"}, description = "Test source directory", required = true)
     private File testDir;
 
-    @Option(names = {"--model"}, description = "LLM model to use", defaultValue = "claude-sonnet-4-20250514")
-    private String model;
+    @Option(names = {"--extra-source"}, description = "Additional source directory, e.g. generated sources (repeatable)")
+    private List<File> extraSourceDirs = List.of();
 
     @Option(names = {"--dry-run"}, description = "Show proposed changes without applying")
     private boolean dryRun;
@@ -40,13 +51,28 @@ public class KillCommand implements Callable<Integer> {
     @Option(names = {"--max-mutants"}, description = "Maximum number of mutants to process", defaultValue = "10")
     private int maxMutants;
 
+    @Option(names = {"--baseline"}, description = "Baseline PIT report; only mutants that newly survived or moved since it are processed")
+    private File baselineFile;
+
+    @Option(names = {"--cache"}, description = "Cache the parsed report next to it (<report>.mkcache) and reuse it on later runs")
+    private boolean cache;
+
     @Option(names = {"-v", "--verbose"}, description = "Verbose output")
     private boolean verbose;
 
+    @Mixin
+    private MutationFilterOptions filterOptions;
+
+    @Mixin
+    private GenerationOptions generationOptions;
+
     @Override
     public Integer call() throws Exception {
         // Validate inputs
-        if (!reportFile.exists()) {
+        if (!generationOptions.validate()) {
+            return 1;
+        }
+        if (!PitReportParser.exists(reportFile)) {
             System.err.println("Report file not found: " + reportFile);
             return 1;
         }
@@ -54,16 +80,30 @@ public class KillCommand implements Callable<Integer> {
             System.err.println("Source directory not found: " + sourceDir);
             return 1;
         }
+        if (baselineFile != null && !PitReportParser.exists(baselineFile)) {
+            System.err.println("Baseline report not found: " + baselineFile);
+            return 1;
+        }
         if (!testDir.isDirectory()) {
             System.err.println("Test directory not found: " + testDir);
             return 1;
         }
+        for (File extraSourceDir : extraSourceDirs) {
+            if (!extraSourceDir.isDirectory()) {
+                System.err.println("Source directory not found: " + extraSourceDir);
+                return 1;
+            }
+        }
 
+        return generationOptions.run(this::execute);
+    }
+
+    private int execute() throws Exception {
         // Load config
-        MutantKillerConfig config = MutantKillerConfig.builder()
-            .model(model)
+        MutantKillerConfig config = generationOptions.applyTo(MutantKillerConfig.builder())
             .sourceDir(sourceDir.toPath())
             .testDir(testDir.toPath())
+            .extraSourceDirs(extraSourceDirs.stream().map(File::toPath).toList())
             .dryRun(dryRun)
             .verbose(verbose)
             .build();
@@ -71,12 +111,22 @@ public class KillCommand implements Callable<Integer> {
         // Parse report
         System.out.println("Parsing PIT report...");
         PitReportParser parser = new PitReportParser();
-        List<MutationResult> mutations = parser.parse(reportFile);
-
-        List<MutationResult> survived = mutations.stream()
-            .filter(MutationResult::survived)
-            .limit(maxMutants)
-            .toList();
+        MutationFilter filter = filterOptions.toFilter(maxMutants);
+        List<MutationResult> survived;
+        if (baselineFile != null) {
+            try (Stream<MutationResult> baseline = parser.stream(baselineFile);
+                 Stream<MutationResult> current = parser.stream(reportFile)) {
+                survived = ReportDiff.compare(baseline, current).stream()
+                    .map(ReportDiff.Entry::mutation)
+                    .filter(filter::test)
+                    .limit(filter.limit())
+                    .toList();
+            }
+        } else if (cache) {
+            survived = new MutationReportCache(parser).open(reportFile).select(filter);
+        } else {
+            survived = parser.parse(reportFile, filter);
+        }
 
         if (survived.isEmpty()) {
             System.out.println("No surviving mutants found. Your tests are strong!");
@@ -90,44 +140,102 @@ public class KillCommand implements Callable<Integer> {
         MutantAnalyzer analyzer = new MutantAnalyzer(config);
         TestImprover improver = new TestImprover(config);
 
-        int killed = 0;
-        for (MutationResult mutant : survived) {
-            System.out.println("=== Processing mutant in " + mutant.mutatedClass() + " ===");
-            System.out.println("Method: " + mutant.mutatedMethod() + " (line " + mutant.lineNumber() + ")");
-            System.out.println("Mutator: " + mutant.mutator());
-            
+        // Analysis only reads sources, so all mutants are analyzed in parallel up front
+        List<MutantAnalyzer.Outcome> analyses = analyzer.analyzeAll(survived);
+
+        Map<Integer, MutantAnalysis> work = new LinkedHashMap<>();
+        for (int i = 0; i < analyses.size(); i++) {
             try {
-                var analysis = analyzer.analyze(mutant);
-                var improvement = improver.improve(mutant, analysis);
-                
-                if (improvement.isPresent()) {
-                    if (dryRun) {
-                        System.out.println("Proposed change:");
-                        System.out.println(improvement.get().diff());
-                    } else {
-                        improvement.get().apply();
-                        System.out.println("Applied test improvement.");
-                    }
-                    killed++;
-                } else {
-                    System.out.println("Could not generate improvement for this mutant.");
-                }
+                work.put(i, analyses.get(i).get());
             } catch (Exception e) {
+                printMutant(survived.get(i));
                 System.err.println("Error processing mutant: " + e.getMessage());
                 if (verbose) {
                     e.printStackTrace();
                 }
+                System.out.println();
             }
+        }
+
+        // Mutants close together in a method share one request
+        List<List<Integer>> groups = generationOptions.grouper().group(work);
+        Map<Integer, MutantGroup> groupWork = new LinkedHashMap<>();
+        for (int g = 0; g < groups.size(); g++) {
+            groupWork.put(g, new MutantGroup(groups.get(g).stream().map(work::get).toList()));
+        }
+        if (groups.size() < work.size()) {
+            System.out.println("Grouped " + work.size() + " mutants into " + groups.size() + " requests.");
             System.out.println();
         }
 
+        // Requests run concurrently; each result is handled as soon as it arrives
+        int killed = 0;
+        GenerationEngine engine = new GenerationEngine(improver, config);
+        try (engine) {
+            Iterable<GenerationEngine.Completion<Integer>> completions =
+                generationOptions.generate(groupWork, engine, improver, config);
+            for (GenerationEngine.Completion<Integer> completion : completions) {
+                List<Integer> members = groups.get(completion.tag());
+                for (int i : members) {
+                    printMutant(survived.get(i));
+                }
+                if (completion.error() != null) {
+                    System.err.println("Error calling Claude API: " + completion.error().getMessage());
+                    if (verbose) {
+                        completion.error().printStackTrace();
+                    }
+                }
+
+                try {
+                    var improvement = completion.improvement();
+                    if (improvement.isPresent()) {
+                        if (dryRun) {
+                            System.out.println("Proposed change:");
+                            System.out.println(improvement.get().diff());
+                        } else {
+                            improvement.get().apply();
+                            System.out.println("Applied test improvement.");
+                        }
+                        for (int i : members) {
+                            if (!improvement.get().testsFor(survived.get(i)).isEmpty()) {
+                                killed++;
+                            }
+                        }
+                    } else {
+                        System.out.println("Could not generate improvement for " + (members.size() > 1 ? "these mutants." : "this mutant."));
+                    }
+                } catch (Exception e) {
+                    System.err.println("Error processing mutant: " + e.getMessage());
+                    if (verbose) {
+                        e.printStackTrace();
+                    }
+                }
+                System.out.println();
+            }
+        }
+
         System.out.println("=== Summary ===");
         System.out.println("Processed: " + survived.size() + " mutants");
         System.out.println("Improvements: " + killed);
         if (dryRun) {
             System.out.println("(dry run - no changes applied)");
         }
+        if (verbose) {
+            System.out.println("Source cache: " + analyzer.sourceCache().hits() + " hits, "
+                + analyzer.sourceCache().misses() + " misses");
+            SourceIndex index = analyzer.sourceIndex();
+            System.out.println("Source index: " + index.size() + " types in " + index.fileCount()
+                + " files (" + index.parsedCount() + " parsed), "
+                + analyzer.testIndex().size() + " classes referenced by tests");
+            generationOptions.printStats(engine, improver);
+        }
 
         return 0;
     }
+
+    private static void printMutant(MutationResult mutant) {
+        System.out.println("=== Processing mutant in " + mutant.mutatedClass() + " ===");
+        System.out.println("Method: " + mutant.mutatedMethod() + " (line " + mutant.lineNumber() + ")");
+        System.out.println("Mutator: " + mutant.mutator());
+    }
 }
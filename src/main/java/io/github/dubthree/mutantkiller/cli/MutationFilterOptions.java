@@ -0,0 +1,58 @@
+package io.github.dubthree.mutantkiller.cli;
+
+import io.github.dubthree.mutantkiller.pit.MutationFilter;
+import picocli.CommandLine.Option;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Shared options for selecting which mutants to read from a PIT report.
+ * The resulting {@link MutationFilter} is applied while parsing.
+ */
+public class MutationFilterOptions {
+
+    @Option(names = {"--status"}, split = ",",
+        description = "Mutation statuses to process (default: SURVIVED,NO_COVERAGE)")
+    private List<String> statuses = new ArrayList<>();
+
+    @Option(names = {"--classes"}, split = ",",
+        description = "Class/package globs to process (e.g. com.example.service.*)")
+    private List<String> classGlobs = new ArrayList<>();
+
+    @Option(names = {"--mutators"}, split = ",",
+        description = "Mutators to process, by full or simple name (e.g. MathMutator)")
+    private List<String> mutators = new ArrayList<>();
+
+    @Option(names = {"--lines"}, description = "Line range to process, e.g. 120-180 or 42")
+    private String lines;
+
+    /**
+     * Build the filter, stopping after {@code limit} matching mutants.
+     */
+    public MutationFilter toFilter(long limit) {
+        MutationFilter.Builder builder = MutationFilter.builder()
+            .classGlobs(classGlobs)
+            .mutators(mutators)
+            .limit(limit);
+
+        if (statuses.isEmpty()) {
+            builder.survivedOnly();
+        } else {
+            builder.statuses(statuses.stream().map(String::toUpperCase).toList());
+        }
+
+        if (lines != null && !lines.isBlank()) {
+            String[] range = lines.split("-", 2);
+            try {
+                int from = Integer.parseInt(range[0].trim());
+                int to = range.length > 1 ? Integer.parseInt(range[1].trim()) : from;
+                builder.lines(from, to);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid --lines value: " + lines);
+            }
+        }
+
+        return builder.build();
+    }
+}
@@ -2,21 +2,31 @@ package io.github.dubthree.mutantkiller.cli;
 
 import io.github.dubthree.mutantkiller.analysis.MutantAnalysis;
 import io.github.dubthree.mutantkiller.analysis.MutantAnalyzer;
+import io.github.dubthree.mutantkiller.analysis.MutantGroup;
+import io.github.dubthree.mutantkiller.codegen.GenerationEngine;
 import io.github.dubthree.mutantkiller.codegen.TestImprovement;
 import io.github.dubthree.mutantkiller.codegen.TestImprover;
 import io.github.dubthree.mutantkiller.config.MutantKillerConfig;
 import io.github.dubthree.mutantkiller.git.GitProvider;
 import io.github.dubthree.mutantkiller.git.RepositoryManager;
 import io.github.dubthree.mutantkiller.build.BuildExecutor;
+import io.github.dubthree.mutantkiller.pit.ModuleMutation;
+import io.github.dubthree.mutantkiller.pit.ModuleReport;
 import io.github.dubthree.mutantkiller.pit.MutationResult;
-import io.github.dubthree.mutantkiller.pit.PitReportParser;
+import io.github.dubthree.mutantkiller.pit.PitReportMerger;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Mixin;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
 import java.io.File;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.Callable;
 
@@ -35,9 +45,6 @@ public class RunCommand implements Callable<Integer> {
     @Option(names = {"-b", "--base-branch"}, description = "Base branch to work from", defaultValue = "main")
     private String baseBranch;
 
-    @Option(names = {"--model"}, description = "LLM model to use", defaultValue = "claude-sonnet-4-20250514")
-    private String model;
-
     @Option(names = {"--max-mutants"}, description = "Maximum mutants to process", defaultValue = "10")
     private int maxMutants;
 
@@ -47,17 +54,27 @@ public class RunCommand implements Callable<Integer> {
     @Option(names = {"--work-dir"}, description = "Working directory for cloned repos")
     private File workDir;
 
-    @Option(names = {"--prompt-dir"}, description = "Directory containing custom prompt templates")
-    private File promptDir;
-
     @Option(names = {"-v", "--verbose"}, description = "Verbose output")
     private boolean verbose;
 
+    @Mixin
+    private MutationFilterOptions filterOptions;
+
+    @Mixin
+    private GenerationOptions generationOptions;
+
     @Option(names = {"--github-token"}, description = "GitHub token (or set GITHUB_TOKEN env var)")
     private String githubToken;
 
     @Override
     public Integer call() throws Exception {
+        if (!generationOptions.validate()) {
+            return 1;
+        }
+        return generationOptions.run(this::execute);
+    }
+
+    private int execute() throws Exception {
         // Resolve GitHub token
         String token = githubToken != null ? githubToken : System.getenv("GITHUB_TOKEN");
         if (token == null || token.isBlank()) {
@@ -102,30 +119,22 @@ public class RunCommand implements Callable<Integer> {
         }
         System.out.println("  Build system: " + buildExecutor.name());
         
-        File mutationsReport = buildExecutor.runMutationTesting();
-        if (mutationsReport == null || !mutationsReport.exists()) {
+        List<ModuleReport> reports = buildExecutor.runMutationTesting();
+        if (reports.isEmpty()) {
             System.err.println("Mutation testing failed or no report generated");
             return 1;
         }
-        System.out.println("  Report: " + mutationsReport);
+        for (ModuleReport report : reports) {
+            System.out.println("  Report: " + report.reportFile()
+                + (report.aggregate() ? " (aggregate)" : reports.size() > 1 ? " [" + report.module() + "]" : ""));
+        }
 
         // Step 3: Parse results
         System.out.println("\nStep 3: Analyzing results...");
-        PitReportParser parser = new PitReportParser();
-        List<MutationResult> mutations = parser.parse(mutationsReport);
+        // Module reports are parsed concurrently; parsing stops once maxMutants survivors are found
+        List<ModuleMutation> survived = new PitReportMerger()
+            .parseAll(reports, filterOptions.toFilter(maxMutants));
         
-        List<MutationResult> survived = mutations.stream()
-            .filter(MutationResult::survived)
-            .limit(maxMutants)
-            .toList();
-
-        long totalMutants = mutations.size();
-        long killedMutants = mutations.stream().filter(MutationResult::killed).count();
-        long survivedMutants = mutations.stream().filter(MutationResult::survived).count();
-        
-        System.out.println("  Total mutants: " + totalMutants);
-        System.out.println("  Killed: " + killedMutants);
-        System.out.println("  Survived: " + survivedMutants);
         System.out.println("  Processing: " + survived.size() + " mutants");
 
         if (survived.isEmpty()) {
@@ -136,96 +145,157 @@ public class RunCommand implements Callable<Integer> {
         // Step 4: Process each surviving mutant
         System.out.println("\nStep 4: Killing mutants...\n");
         
-        MutantKillerConfig config = MutantKillerConfig.builder()
-            .model(model)
-            .sourceDir(buildExecutor.sourceDir())
-            .testDir(buildExecutor.testDir())
-            .promptDir(promptDir != null ? promptDir.toPath() : null)
-            .dryRun(dryRun)
-            .verbose(verbose)
-            .build();
-
-        MutantAnalyzer analyzer = new MutantAnalyzer(config);
+        MutantKillerConfig config = buildConfig(buildExecutor, repoPath);
         TestImprover improver = new TestImprover(config);
 
-        int prsCreated = 0;
-        int failures = 0;
+        // One analyzer per module, since each module has its own source and test roots
+        Map<Path, MutantAnalyzer> analyzers = new HashMap<>();
+        List<Path> moduleDirs = reports.stream().anyMatch(ModuleReport::aggregate)
+            ? buildExecutor.moduleDirs()
+            : List.of();
 
+        Path[] mutantModules = new Path[survived.size()];
+        Map<Path, List<Integer>> mutantsByModule = new LinkedHashMap<>();
         for (int i = 0; i < survived.size(); i++) {
-            MutationResult mutant = survived.get(i);
-            String mutantId = generateMutantId(mutant, i);
-            
-            System.out.println("--- Mutant " + (i + 1) + "/" + survived.size() + " ---");
-            System.out.println("Class: " + mutant.mutatedClass());
-            System.out.println("Method: " + mutant.mutatedMethod() + " (line " + mutant.lineNumber() + ")");
-            System.out.println("Type: " + mutant.getMutatorDescription());
+            mutantModules[i] = moduleDirFor(survived.get(i), buildExecutor, moduleDirs);
+            mutantsByModule.computeIfAbsent(mutantModules[i], dir -> new ArrayList<>()).add(i);
+        }
 
-            try {
-                // Analyze
-                MutantAnalysis analysis = analyzer.analyze(mutant);
-                
-                // Generate fix
-                Optional<TestImprovement> improvement = improver.improve(mutant, analysis);
-                
-                if (improvement.isEmpty()) {
-                    System.out.println("Status: Could not generate fix");
-                    failures++;
-                    System.out.println();
-                    continue;
-                }
+        // Analysis only reads sources, so each module's mutants are analyzed in parallel up front
+        MutantAnalyzer.Outcome[] analyses = new MutantAnalyzer.Outcome[survived.size()];
+        for (Map.Entry<Path, List<Integer>> module : mutantsByModule.entrySet()) {
+            MutantAnalyzer analyzer = analyzers.computeIfAbsent(module.getKey(),
+                dir -> new MutantAnalyzer(buildConfig(buildExecutor, dir)));
+            List<Integer> indexes = module.getValue();
+            List<MutantAnalyzer.Outcome> outcomes = analyzer.analyzeAll(
+                indexes.stream().map(i -> survived.get(i).mutation()).toList());
+            for (int j = 0; j < indexes.size(); j++) {
+                analyses[indexes.get(j)] = outcomes.get(j);
+            }
+        }
 
-                if (dryRun) {
-                    System.out.println("Status: Fix generated (dry run)");
-                    System.out.println("\nProposed fix:");
-                    System.out.println(improvement.get().diff());
-                } else {
-                    // Create branch
-                    String branchName = "mutant-killer/fix-" + mutantId;
-                    repoManager.createBranch(branchName, baseBranch);
-                    
-                    // Apply fix
-                    improvement.get().apply();
-                    
-                    // Commit and push
-                    String commitMsg = String.format(
-                        "Kill mutant: %s.%s (line %d)%n%nMutator: %s%n%nGenerated by mutant-killer",
-                        mutant.mutatedClass(),
-                        mutant.mutatedMethod(),
-                        mutant.lineNumber(),
-                        mutant.getMutatorDescription()
-                    );
-                    repoManager.commitAndPush(branchName, commitMsg);
-                    
-                    // Create PR/MR
-                    String prTitle = String.format("Kill mutant in %s.%s", 
-                        simpleClassName(mutant.mutatedClass()), 
-                        mutant.mutatedMethod());
-                    String prBody = buildPrBody(mutant, analysis, improvement.get());
-                    
-                    String prUrl = gitProvider.createPullRequest(branchName, baseBranch, prTitle, prBody);
-                    
-                    System.out.println("Status: PR created");
-                    System.out.println("PR: " + prUrl);
-                    prsCreated++;
-                    
-                    // Return to base branch for next iteration
-                    repoManager.checkout(baseBranch);
-                }
+        int prsCreated = 0;
+        int failures = 0;
 
+        Map<Integer, MutantAnalysis> work = new LinkedHashMap<>();
+        for (int i = 0; i < survived.size(); i++) {
+            try {
+                work.put(i, analyses[i].get());
             } catch (Exception e) {
+                printMutant(i, survived, mutantModules[i], reports, repoPath);
                 System.out.println("Status: Error - " + e.getMessage());
                 if (verbose) {
                     e.printStackTrace();
                 }
                 failures++;
-                
-                // Try to recover to base branch
+                System.out.println();
+            }
+        }
+
+        // Mutants close together in a method share one request, and one PR
+        List<List<Integer>> groups = generationOptions.grouper().group(work);
+        Map<Integer, MutantGroup> groupWork = new LinkedHashMap<>();
+        for (int g = 0; g < groups.size(); g++) {
+            groupWork.put(g, new MutantGroup(groups.get(g).stream().map(work::get).toList()));
+        }
+        if (groups.size() < work.size()) {
+            System.out.println("Grouped " + work.size() + " mutants into " + groups.size() + " requests.\n");
+        }
+
+        // Fixes are generated concurrently and committed one at a time, in the order they arrive
+        GenerationEngine engine = new GenerationEngine(improver, config);
+        try (engine) {
+            Iterable<GenerationEngine.Completion<Integer>> completions =
+                generationOptions.generate(groupWork, engine, improver, config);
+            for (GenerationEngine.Completion<Integer> completion : completions) {
+                List<Integer> members = groups.get(completion.tag());
+                int i = members.get(0);
+                MutationResult mutant = survived.get(i).mutation();
+                String mutantId = generateMutantId(mutant, i);
+                MutantGroup group = groupWork.get(completion.tag());
+                for (int member : members) {
+                    printMutant(member, survived, mutantModules[member], reports, repoPath);
+                }
+
                 try {
-                    repoManager.checkout(baseBranch);
-                } catch (Exception ignored) {}
+                    if (completion.error() != null) {
+                        throw completion.error();
+                    }
+                    Optional<TestImprovement> improvement = completion.improvement();
+
+                    if (improvement.isEmpty()) {
+                        System.out.println("Status: Could not generate fix");
+                        failures += members.size();
+                        System.out.println();
+                        continue;
+                    }
+                    for (int member : members) {
+                        if (improvement.get().testsFor(survived.get(member).mutation()).isEmpty()) {
+                            failures++;
+                        }
+                    }
+
+                    if (dryRun) {
+                        System.out.println("Status: Fix generated (dry run)");
+                        System.out.println("\nProposed fix:");
+                        System.out.println(improvement.get().diff());
+                    } else {
+                        // Create branch
+                        String branchName = "mutant-killer/fix-" + mutantId;
+                        repoManager.createBranch(branchName, baseBranch);
+
+                        // Apply fix
+                        improvement.get().apply();
+
+                        // Commit and push
+                        String commitMsg = group.size() == 1
+                            ? String.format(
+                                "Kill mutant: %s.%s (line %d)%n%nMutator: %s%n%nGenerated by mutant-killer",
+                                mutant.mutatedClass(),
+                                mutant.mutatedMethod(),
+                                mutant.lineNumber(),
+                                mutant.getMutatorDescription())
+                            : String.format(
+                                "Kill %d mutants: %s.%s (lines %d-%d)%n%nGenerated by mutant-killer",
+                                group.size(),
+                                mutant.mutatedClass(),
+                                mutant.mutatedMethod(),
+                                mutant.lineNumber(),
+                                survived.get(members.get(members.size() - 1)).mutation().lineNumber());
+                        repoManager.commitAndPush(branchName, commitMsg);
+
+                        // Create PR/MR
+                        String prTitle = String.format("Kill %s in %s.%s",
+                            group.size() == 1 ? "mutant" : group.size() + " mutants",
+                            simpleClassName(mutant.mutatedClass()),
+                            mutant.mutatedMethod());
+                        String prBody = buildPrBody(improvement.get());
+
+                        String prUrl = gitProvider.createPullRequest(branchName, baseBranch, prTitle, prBody);
+
+                        System.out.println("Status: PR created");
+                        System.out.println("PR: " + prUrl);
+                        prsCreated++;
+
+                        // Return to base branch for next iteration
+                        repoManager.checkout(baseBranch);
+                    }
+
+                } catch (Exception e) {
+                    System.out.println("Status: Error - " + e.getMessage());
+                    if (verbose) {
+                        e.printStackTrace();
+                    }
+                    failures += members.size();
+
+                    // Try to recover to base branch
+                    try {
+                        repoManager.checkout(baseBranch);
+                    } catch (Exception ignored) {}
+                }
+
+                System.out.println();
             }
-            
-            System.out.println();
         }
 
         // Summary
@@ -238,10 +308,58 @@ public class RunCommand implements Callable<Integer> {
             System.out.println("PRs created: " + prsCreated);
         }
         System.out.println("Failures: " + failures);
+        if (verbose) {
+            long hits = analyzers.values().stream().mapToLong(a -> a.sourceCache().hits()).sum();
+            long misses = analyzers.values().stream().mapToLong(a -> a.sourceCache().misses()).sum();
+            System.out.println("Source cache: " + hits + " hits, " + misses + " misses");
+            generationOptions.printStats(engine, improver);
+        }
 
         return 0;
     }
 
+    private static void printMutant(int i, List<ModuleMutation> survived, Path moduleDir,
+                                    List<ModuleReport> reports, Path repoPath) {
+        ModuleMutation moduleMutant = survived.get(i);
+        MutationResult mutant = moduleMutant.mutation();
+        System.out.println("--- Mutant " + (i + 1) + "/" + survived.size() + " ---");
+        if (reports.size() > 1 || moduleMutant.module().aggregate()) {
+            System.out.println("Module: " + (moduleDir.equals(repoPath) ? "." : repoPath.relativize(moduleDir)));
+        }
+        System.out.println("Class: " + mutant.mutatedClass());
+        System.out.println("Method: " + mutant.mutatedMethod() + " (line " + mutant.lineNumber() + ")");
+        System.out.println("Type: " + mutant.getMutatorDescription());
+    }
+
+    private MutantKillerConfig buildConfig(BuildExecutor buildExecutor, Path moduleDir) {
+        return generationOptions.applyTo(MutantKillerConfig.builder())
+            .sourceDir(buildExecutor.sourceDir(moduleDir))
+            .testDir(buildExecutor.testDir(moduleDir))
+            .extraSourceDirs(buildExecutor.generatedSourceDirs(moduleDir))
+            .dryRun(dryRun)
+            .verbose(verbose)
+            .build();
+    }
+
+    /**
+     * The module a mutant belongs to. Mutants from an aggregate report are attributed
+     * to the module whose sources contain the mutated class.
+     */
+    private Path moduleDirFor(ModuleMutation mutant, BuildExecutor buildExecutor, List<Path> moduleDirs) {
+        if (!mutant.module().aggregate()) {
+            return mutant.module().moduleDir();
+        }
+        String className = mutant.mutation().mutatedClass();
+        int nested = className.indexOf('$');
+        String relativePath = (nested >= 0 ? className.substring(0, nested) : className).replace('.', '/') + ".java";
+        for (Path moduleDir : moduleDirs) {
+            if (Files.exists(buildExecutor.sourceDir(moduleDir).resolve(relativePath))) {
+                return moduleDir;
+            }
+        }
+        return mutant.module().moduleDir();
+    }
+
     private String generateMutantId(MutationResult mutant, int index) {
         String className = simpleClassName(mutant.mutatedClass());
         return String.format("%s-%s-%d-%d", 
@@ -265,20 +383,43 @@ public class RunCommand implements Callable<Integer> {
         return name;
     }
 
-    private String buildPrBody(MutationResult mutant, MutantAnalysis analysis, TestImprovement improvement) {
+    private String buildPrBody(TestImprovement improvement) {
         StringBuilder body = new StringBuilder();
-        body.append("## Mutation Details\n\n");
-        body.append("| Property | Value |\n");
-        body.append("|----------|-------|\n");
-        body.append("| Class | `").append(mutant.mutatedClass()).append("` |\n");
-        body.append("| Method | `").append(mutant.mutatedMethod()).append("` |\n");
-        body.append("| Line | ").append(mutant.lineNumber()).append(" |\n");
-        body.append("| Mutator | ").append(mutant.getMutatorDescription()).append(" |\n\n");
-        
-        body.append("## Why This Mutation Survived\n\n");
-        body.append("The existing tests did not verify the specific behavior ");
-        body.append("that this mutation changes. ");
-        body.append("This PR adds a test that will fail if the mutation is applied.\n\n");
+        MutantGroup group = improvement.group();
+        if (group.size() == 1) {
+            MutationResult mutant = group.first().mutation();
+            body.append("## Mutation Details\n\n");
+            body.append("| Property | Value |\n");
+            body.append("|----------|-------|\n");
+            body.append("| Class | `").append(mutant.mutatedClass()).append("` |\n");
+            body.append("| Method | `").append(mutant.mutatedMethod()).append("` |\n");
+            body.append("| Line | ").append(mutant.lineNumber()).append(" |\n");
+            body.append("| Mutator | ").append(mutant.getMutatorDescription()).append(" |\n\n");
+
+            body.append("## Why This Mutation Survived\n\n");
+            body.append("The existing tests did not verify the specific behavior ");
+            body.append("that this mutation changes. ");
+            body.append("This PR adds a test that will fail if the mutation is applied.\n\n");
+        } else {
+            MutationResult first = group.first().mutation();
+            body.append("## Mutation Details\n\n");
+            body.append("Class `").append(first.mutatedClass()).append("`, method `")
+                .append(first.mutatedMethod()).append("`:\n\n");
+            body.append("| Line | Mutator | Tests |\n");
+            body.append("|------|---------|-------|\n");
+            for (Map.Entry<MutationResult, List<String>> entry : improvement.tests().entrySet()) {
+                body.append("| ").append(entry.getKey().lineNumber())
+                    .append(" | ").append(entry.getKey().getMutatorDescription())
+                    .append(" | ").append(entry.getValue().isEmpty() ? "-" : "`" + String.join("`, `", entry.getValue()) + "`")
+                    .append(" |\n");
+            }
+            body.append("\n");
+
+            body.append("## Why These Mutations Survived\n\n");
+            body.append("The existing tests did not verify the specific behavior ");
+            body.append("that these mutations change. ");
+            body.append("This PR adds tests that will fail if any of the mutations is applied.\n\n");
+        }
         
         body.append("## Changes\n\n");
         body.append("```java\n");
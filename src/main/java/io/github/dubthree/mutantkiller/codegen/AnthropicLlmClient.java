@@ -0,0 +1,127 @@
+package io.github.dubthree.mutantkiller.codegen;
+
+import com.anthropic.client.AnthropicClient;
+import com.anthropic.client.okhttp.AnthropicOkHttpClient;
+import com.anthropic.core.http.HttpResponseFor;
+import com.anthropic.core.http.StreamResponse;
+import com.anthropic.models.messages.Message;
+import com.anthropic.models.messages.MessageCreateParams;
+import com.anthropic.models.messages.RawMessageStreamEvent;
+import com.anthropic.models.messages.Usage;
+import com.anthropic.models.messages.batches.BatchCreateParams;
+import com.anthropic.models.messages.batches.BatchResultsParams;
+import com.anthropic.models.messages.batches.BatchRetrieveParams;
+import com.anthropic.models.messages.batches.MessageBatch;
+import com.anthropic.models.messages.batches.MessageBatchIndividualResponse;
+import io.github.dubthree.mutantkiller.codegen.TestImprover.Reply;
+import io.github.dubthree.mutantkiller.codegen.TestImprover.Request;
+import io.github.dubthree.mutantkiller.config.MutantKillerConfig;
+
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * Sends requests to the Anthropic API, or to a compatible server at the configured base URL.
+ */
+final class AnthropicLlmClient implements LlmClient {
+
+    private final AnthropicClient client;
+    private final int fenceTokens;
+
+    AnthropicLlmClient(MutantKillerConfig config) {
+        AnthropicOkHttpClient.Builder clientBuilder = AnthropicOkHttpClient.builder()
+            .apiKey(config.apiKey())
+            // Retries are left to GenerationEngine, which needs to see rate limiting to adapt to it
+            .maxRetries(0);
+        if (config.baseUrl() != null) {
+            clientBuilder.baseUrl(config.baseUrl());
+        }
+        this.client = clientBuilder.build();
+        this.fenceTokens = config.fenceTokens();
+    }
+
+    @Override
+    public Reply send(Request request) {
+        try (HttpResponseFor<Message> response = client.messages().withRawResponse().create(request.params())) {
+            Message message = response.parse();
+            Usage usage = message.usage();
+            return new Reply(TestImprover.text(message), response.headers(), usage.inputTokens(), usage.outputTokens(),
+                usage.cacheReadInputTokens().orElse(0L), usage.cacheCreationInputTokens().orElse(0L), false);
+        }
+    }
+
+    /**
+     * Stream a response, closing it as soon as the first code block is complete, or once the model
+     * has written {@code fenceTokens} tokens without opening one. Closing the stream ends generation,
+     * so the rest of the response is neither waited for nor paid for.
+     */
+    @Override
+    public Reply stream(Request request) {
+        try (HttpResponseFor<StreamResponse<RawMessageStreamEvent>> response =
+                 client.messages().withRawResponse().createStreaming(request.params());
+             StreamResponse<RawMessageStreamEvent> events = response.parse()) {
+            CodeBlockExtractor extractor = new CodeBlockExtractor();
+            Usage usage = null;
+            long outputTokens = -1;
+            Iterator<RawMessageStreamEvent> iterator = events.stream().iterator();
+            boolean stoppedEarly = false;
+            while (iterator.hasNext()) {
+                RawMessageStreamEvent event = iterator.next();
+                if (event.isStart()) {
+                    usage = event.asStart().message().usage();
+                } else if (event.isDelta()) {
+                    outputTokens = event.asDelta().usage().outputTokens();
+                } else if (event.isContentBlockDelta() && event.asContentBlockDelta().delta().isText()) {
+                    boolean complete = extractor.append(event.asContentBlockDelta().delta().asText().text());
+                    boolean noCode = !extractor.opened() && fenceTokens > 0
+                        && extractor.tokens() >= fenceTokens;
+                    if (complete || noCode) {
+                        stoppedEarly = true;
+                        break;
+                    }
+                }
+            }
+            return new Reply(extractor.text(), response.headers(),
+                usage != null ? usage.inputTokens() : 0,
+                outputTokens >= 0 ? outputTokens : extractor.tokens(),
+                usage != null ? usage.cacheReadInputTokens().orElse(0L) : 0,
+                usage != null ? usage.cacheCreationInputTokens().orElse(0L) : 0,
+                stoppedEarly);
+        }
+    }
+
+    @Override
+    public MessageBatch createBatch(Collection<Request> requests) {
+        BatchCreateParams.Builder batch = BatchCreateParams.builder();
+        for (Request request : requests) {
+            MessageCreateParams params = request.params();
+            BatchCreateParams.Request.Params.Builder batchParams = BatchCreateParams.Request.Params.builder()
+                .model(params.model())
+                .maxTokens(params.maxTokens())
+                .messages(params.messages());
+            params.system().ifPresent(system -> {
+                if (system.isTextBlockParams()) {
+                    batchParams.systemOfTextBlockParams(system.asTextBlockParams());
+                } else {
+                    batchParams.system(system.asString());
+                }
+            });
+            params.temperature().ifPresent(batchParams::temperature);
+            batch.addRequest(BatchCreateParams.Request.builder()
+                .customId(request.cacheKey())
+                .params(batchParams.build())
+                .build());
+        }
+        return client.messages().batches().create(batch.build());
+    }
+
+    @Override
+    public MessageBatch retrieveBatch(String batchId) {
+        return client.messages().batches().retrieve(BatchRetrieveParams.builder().messageBatchId(batchId).build());
+    }
+
+    @Override
+    public StreamResponse<MessageBatchIndividualResponse> batchResults(String batchId) {
+        return client.messages().batches().resultsStreaming(BatchResultsParams.builder().messageBatchId(batchId).build());
+    }
+}
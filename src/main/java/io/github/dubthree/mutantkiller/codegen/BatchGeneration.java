@@ -0,0 +1,264 @@
+package io.github.dubthree.mutantkiller.codegen;
+
+import com.anthropic.core.http.StreamResponse;
+import com.anthropic.errors.AnthropicIoException;
+import com.anthropic.errors.AnthropicServiceException;
+import com.anthropic.models.messages.batches.MessageBatch;
+import com.anthropic.models.messages.batches.MessageBatchIndividualResponse;
+import com.anthropic.models.messages.batches.MessageBatchRequestCounts;
+import com.anthropic.models.messages.batches.MessageBatchResult;
+import io.github.dubthree.mutantkiller.analysis.MutantGroup;
+import io.github.dubthree.mutantkiller.config.MutantKillerConfig;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Generates test improvements for many mutations through the API's message batches, which cost
+ * half as much as individual requests but may take up to a day.
+ *
+ * <p>Requests are identified in the batch by their response cache key, so identical prompts are
+ * sent once and responses already cached are not sent at all. The id of a submitted batch is
+ * stored under the cache directory, keyed by the requests it contains: if the process is stopped
+ * while the batch runs, the next run with the same mutations resumes polling instead of
+ * submitting again. If the stored batch can no longer be read, or canceled or expired some of its
+ * requests, those requests are submitted in a new batch.
+ */
+public final class BatchGeneration {
+
+    private static final Duration INITIAL_POLL = Duration.ofSeconds(5);
+    private static final Duration MAX_POLL = Duration.ofSeconds(60);
+
+    private final TestImprover improver;
+    private final Path stateDir;
+    private final boolean verbose;
+
+    public BatchGeneration(TestImprover improver, MutantKillerConfig config) {
+        this.improver = improver;
+        this.stateDir = config.cacheDir() != null ? config.cacheDir().resolve("batches") : null;
+        this.verbose = config.verbose();
+    }
+
+    /**
+     * Generate an improvement for every group of mutations and wait for the batch to end.
+     */
+    public <T> List<GenerationEngine.Completion<T>> generateAll(Map<T, MutantGroup> work)
+            throws IOException, InterruptedException {
+        List<GenerationEngine.Completion<T>> completions = new ArrayList<>();
+        // Sorted by key, so the same mutations always make the same batch
+        Map<String, TestImprover.Request> pending = new TreeMap<>();
+        Map<String, Map<T, MutantGroup>> waiting = new LinkedHashMap<>();
+        for (Map.Entry<T, MutantGroup> entry : work.entrySet()) {
+            try {
+                TestImprover.Request request = improver.request(entry.getValue());
+                Optional<String> cached = improver.cachedResponse(request);
+                if (cached.isPresent()) {
+                    completions.add(new GenerationEngine.Completion<>(entry.getKey(),
+                        improver.toImprovement(entry.getValue(), cached.get()), null));
+                    continue;
+                }
+                pending.putIfAbsent(request.cacheKey(), request);
+                waiting.computeIfAbsent(request.cacheKey(), k -> new LinkedHashMap<>())
+                    .put(entry.getKey(), entry.getValue());
+            } catch (RuntimeException e) {
+                completions.add(new GenerationEngine.Completion<>(entry.getKey(), Optional.empty(), e));
+            }
+        }
+        if (pending.isEmpty()) {
+            return completions;
+        }
+
+        Path state = stateDir != null ? stateDir.resolve(runKey(pending.keySet()) + ".properties") : null;
+        String batchId = state != null ? readBatchId(state) : null;
+        boolean resumed = batchId != null;
+        if (resumed) {
+            System.out.println("Resuming batch " + batchId);
+        }
+        while (true) {
+            if (batchId == null) {
+                batchId = improver.createBatch(pending.values()).id();
+                System.out.println("Submitted batch " + batchId + " with " + pending.size() + " requests");
+                if (state != null) {
+                    writeState(state, batchId, "in_progress");
+                }
+            }
+            boolean stale;
+            try {
+                await(batchId, state);
+                stale = collect(batchId, resumed, pending, waiting, completions);
+            } catch (AnthropicServiceException e) {
+                // A resumed batch may have expired or belong to another account; a new one is submitted
+                if (!resumed || e.statusCode() >= 500 || e.statusCode() == 429) {
+                    throw e;
+                }
+                stale = true;
+            }
+            if (!stale || pending.isEmpty()) {
+                break;
+            }
+            System.out.println("Batch " + batchId + " cannot be resumed, submitting " + pending.size() + " requests again");
+            if (state != null) {
+                Files.deleteIfExists(state);
+            }
+            batchId = null;
+            resumed = false;
+        }
+
+        for (Map<T, MutantGroup> tags : waiting.values()) {
+            for (T tag : tags.keySet()) {
+                completions.add(new GenerationEngine.Completion<>(tag, Optional.empty(),
+                    new IllegalStateException("No result in batch " + batchId)));
+            }
+        }
+        if (state != null) {
+            Files.deleteIfExists(state);
+        }
+        return completions;
+    }
+
+    /**
+     * Turn the results of an ended batch into completions, removing their requests from those pending.
+     * Requests that a resumed batch canceled or let expire stay pending, to be submitted again.
+     *
+     * @return whether a resumed batch left requests to submit again
+     */
+    private <T> boolean collect(String batchId, boolean resumed, Map<String, TestImprover.Request> pending,
+                                Map<String, Map<T, MutantGroup>> waiting,
+                                List<GenerationEngine.Completion<T>> completions) {
+        boolean stale = false;
+        try (StreamResponse<MessageBatchIndividualResponse> results = improver.batchResults(batchId)) {
+            for (MessageBatchIndividualResponse response : (Iterable<MessageBatchIndividualResponse>) results.stream()::iterator) {
+                MessageBatchResult result = response.result();
+                if (resumed && (result.isCanceled() || result.isExpired())) {
+                    stale |= pending.containsKey(response.customId());
+                    continue;
+                }
+                TestImprover.Request request = pending.remove(response.customId());
+                Map<T, MutantGroup> tags = waiting.remove(response.customId());
+                if (request == null || tags == null) {
+                    continue;
+                }
+                for (Map.Entry<T, MutantGroup> tag : tags.entrySet()) {
+                    completions.add(completion(tag.getKey(), tag.getValue(), request, result));
+                }
+            }
+        }
+        return stale;
+    }
+
+    private <T> GenerationEngine.Completion<T> completion(T tag, MutantGroup group,
+                                                          TestImprover.Request request, MessageBatchResult result) {
+        if (result.isSucceeded()) {
+            try {
+                String content = TestImprover.text(result.asSucceeded().message());
+                return new GenerationEngine.Completion<>(tag, improver.received(group, request, content), null);
+            } catch (RuntimeException e) {
+                return new GenerationEngine.Completion<>(tag, Optional.empty(), e);
+            }
+        }
+        String reason = result.isErrored()
+            ? "failed: " + result.asErrored().error().error()
+            : result.isCanceled() ? "was canceled" : "expired";
+        return new GenerationEngine.Completion<>(tag, Optional.empty(),
+            new IllegalStateException("Batch request " + reason));
+    }
+
+    /**
+     * Poll until the batch has ended, backing off while it is in progress.
+     */
+    private void await(String batchId, Path state) throws IOException, InterruptedException {
+        Duration poll = INITIAL_POLL;
+        String lastProgress = null;
+        while (true) {
+            MessageBatch batch;
+            try {
+                batch = improver.retrieveBatch(batchId);
+            } catch (AnthropicIoException e) {
+                batch = null;
+            } catch (AnthropicServiceException e) {
+                if (e.statusCode() < 500 && e.statusCode() != 429) {
+                    throw e;
+                }
+                batch = null;
+            }
+            if (batch != null) {
+                if (MessageBatch.ProcessingStatus.ENDED.equals(batch.processingStatus())) {
+                    return;
+                }
+                MessageBatchRequestCounts counts = batch.requestCounts();
+                String progress = String.format("Batch %s: %d processing, %d succeeded, %d errored",
+                    batchId, counts.processing(), counts.succeeded(), counts.errored());
+                if (!progress.equals(lastProgress) || verbose) {
+                    System.out.println(progress);
+                    lastProgress = progress;
+                }
+                if (state != null) {
+                    writeState(state, batchId, batch.processingStatus().toString());
+                }
+            }
+            Thread.sleep(poll);
+            poll = Duration.ofMillis(Math.min(MAX_POLL.toMillis(), (long) (poll.toMillis() * 1.5)));
+        }
+    }
+
+    private static String runKey(Iterable<String> requestKeys) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        for (String key : requestKeys) {
+            digest.update(key.getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static String readBatchId(Path state) throws IOException {
+        if (!Files.exists(state)) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(state, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return properties.getProperty("batch");
+    }
+
+    private static void writeState(Path state, String batchId, String status) throws IOException {
+        Files.createDirectories(state.getParent());
+        Properties properties = new Properties();
+        properties.setProperty("batch", batchId);
+        properties.setProperty("status", status);
+        Path temp = Files.createTempFile(state.getParent(), state.getFileName().toString(), ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                properties.store(writer, null);
+            }
+            try {
+                Files.move(temp, state, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, state, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
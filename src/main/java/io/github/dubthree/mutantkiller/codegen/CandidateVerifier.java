@@ -0,0 +1,18 @@
+package io.github.dubthree.mutantkiller.codegen;
+
+import java.util.Optional;
+
+/**
+ * Decides whether a generated test improvement is good enough to take, so that the
+ * {@link GenerationEngine} can pick among speculative candidates.
+ */
+@FunctionalInterface
+public interface CandidateVerifier {
+
+    /**
+     * Check a candidate. Called concurrently for different candidates.
+     *
+     * @return why the candidate is rejected, or empty if it passes
+     */
+    Optional<String> check(TestImprovement candidate);
+}
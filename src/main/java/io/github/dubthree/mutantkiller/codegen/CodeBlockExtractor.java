@@ -0,0 +1,89 @@
+package io.github.dubthree.mutantkiller.codegen;
+
+/**
+ * Finds the first fenced Java code block in text that arrives in pieces, so a streamed response
+ * can be closed as soon as the block is complete.
+ *
+ * <p>Fences are recognized like {@link TestImprover}'s extraction does: an opening fence is
+ * {@code ```} or {@code ```java} at the end of a line, and the block ends at the next line that
+ * starts with {@code ```}. Fences for other languages are skipped. Text is scanned once, line by
+ * line, as it arrives.
+ */
+final class CodeBlockExtractor {
+
+    private static final String FENCE = "```";
+
+    private final StringBuilder text = new StringBuilder();
+    /** Start of the first line not yet scanned. */
+    private int lineStart;
+    private boolean opened;
+    private boolean complete;
+    /** Inside a block for another language. */
+    private boolean skipping;
+
+    /**
+     * Append the next piece of the response.
+     *
+     * @return whether the first code block is now complete
+     */
+    boolean append(String delta) {
+        text.append(delta);
+        while (!complete) {
+            int end = text.indexOf("\n", lineStart);
+            if (end < 0) {
+                // A closing fence is recognized before its line ends
+                complete = opened && startsWithFence(lineStart);
+                break;
+            }
+            if (opened) {
+                complete = startsWithFence(lineStart);
+            } else if (skipping) {
+                skipping = !startsWithFence(lineStart);
+            } else {
+                scanOpening(lineStart, end);
+            }
+            lineStart = end + 1;
+        }
+        return complete;
+    }
+
+    /**
+     * Whether a code block has been opened.
+     */
+    boolean opened() {
+        return opened;
+    }
+
+    boolean complete() {
+        return complete;
+    }
+
+    /**
+     * Rough number of tokens received so far (four characters per token).
+     */
+    long tokens() {
+        return text.length() / 4;
+    }
+
+    String text() {
+        return text.toString();
+    }
+
+    private boolean startsWithFence(int start) {
+        return text.length() - start >= FENCE.length() && text.substring(start, start + FENCE.length()).equals(FENCE);
+    }
+
+    /** Open on a line ending with {@code ```} or {@code ```java}; skip a block for another language. */
+    private void scanOpening(int start, int end) {
+        int fence = text.lastIndexOf(FENCE, end);
+        if (fence < start) {
+            return;
+        }
+        String language = text.substring(fence + FENCE.length(), end).strip();
+        if (language.isEmpty() || language.equals("java")) {
+            opened = true;
+        } else if (language.chars().noneMatch(Character::isWhitespace)) {
+            skipping = true;
+        }
+    }
+}
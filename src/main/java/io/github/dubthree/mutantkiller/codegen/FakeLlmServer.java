@@ -0,0 +1,548 @@
+package io.github.dubthree.mutantkiller.codegen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A local stand-in for the Messages API, for load and regression runs that must not cost tokens or
+ * depend on the real service.
+ *
+ * <p>It answers plain, streamed and batch requests with a test that calls the mutated method, one
+ * per mutation of a group, followed by prose the way models tend to add it. Response times and
+ * errors follow the configured {@link Options}: each request takes the latency plus or minus up to
+ * the jitter, fails with each error status at its rate, and is answered 429 beyond the concurrency
+ * limit. Prompt caching is emulated: the first request with a cacheable prefix writes it, later
+ * ones read it. Outcomes are drawn from the seed, the request body and how often that body was
+ * sent, so a run with the same inputs sees the same latencies and errors, and a retry can succeed.
+ */
+public final class FakeLlmServer implements AutoCloseable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Pattern DURATION = Pattern.compile("(\\d+)(ms|s)");
+    private static final Pattern SINGLE_CLASS = Pattern.compile("(?m)^- Class: (\\S+)$");
+    private static final Pattern SINGLE_METHOD = Pattern.compile("(?m)^- Method: (\\S+)$");
+    private static final Pattern GROUP = Pattern.compile("All in class (\\S+), method (\\S+):");
+    private static final Pattern LABEL = Pattern.compile("(?m)^- (M\\d+): line");
+    /** Characters per streamed text delta, a few tokens. */
+    private static final int DELTA_CHARS = 16;
+    private static final String PROSE = """
+        This test exercises the mutated line directly, so the original code and the mutant produce \
+        different results and the assertion tells them apart. It uses the existing fixtures of the \
+        test class and does not depend on the order in which tests run. If the method has other \
+        callers, they are not affected, because the test only observes the return value and the \
+        state of the object under test.
+        """;
+
+    /**
+     * How the server behaves.
+     *
+     * @param errorRates the share of requests failed with each HTTP status, e.g. 429, 500 or 529
+     * @param concurrency requests answered at once before further ones get 429; 0 for no limit
+     */
+    public record Options(Duration latency, Duration jitter, Map<Integer, Double> errorRates,
+                          int concurrency, long seed) {
+
+        public static final Options DEFAULT = new Options(Duration.ofMillis(800), Duration.ofMillis(300), Map.of(), 0, 42);
+
+        public Options {
+            // Sorted, so errors are drawn in the same order every run
+            errorRates = Collections.unmodifiableMap(new TreeMap<>(errorRates));
+            double total = errorRates.values().stream().mapToDouble(Double::doubleValue).sum();
+            if (total > 1) {
+                throw new IllegalArgumentException("Error rates add up to more than 1: " + errorRates);
+            }
+        }
+
+        /**
+         * Parse a spec like {@code latency=800ms,jitter=300ms,429=0.05,529=0.01,concurrency=16,seed=7}.
+         * Keys that are left out keep their defaults.
+         */
+        public static Options parse(String spec) {
+            Duration latency = DEFAULT.latency;
+            Duration jitter = DEFAULT.jitter;
+            Map<Integer, Double> errorRates = new TreeMap<>();
+            int concurrency = DEFAULT.concurrency;
+            long seed = DEFAULT.seed;
+            for (String entry : spec.split(",")) {
+                if (entry.isBlank()) {
+                    continue;
+                }
+                String[] pair = entry.split("=", 2);
+                if (pair.length != 2) {
+                    throw new IllegalArgumentException("Expected key=value: " + entry);
+                }
+                String key = pair[0].strip();
+                String value = pair[1].strip();
+                try {
+                    switch (key) {
+                        case "latency" -> latency = duration(value);
+                        case "jitter" -> jitter = duration(value);
+                        case "concurrency" -> concurrency = Integer.parseInt(value);
+                        case "seed" -> seed = Long.parseLong(value);
+                        default -> {
+                            if (!key.matches("[45]\\d\\d")) {
+                                throw new IllegalArgumentException("Unknown key: " + key);
+                            }
+                            double rate = Double.parseDouble(value);
+                            if (rate < 0 || rate > 1) {
+                                throw new IllegalArgumentException("Error rate must be between 0 and 1: " + entry);
+                            }
+                            errorRates.put(Integer.parseInt(key), rate);
+                        }
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Not a number: " + entry, e);
+                }
+            }
+            return new Options(latency, jitter, errorRates, concurrency, seed);
+        }
+
+        private static Duration duration(String value) {
+            Matcher matcher = DURATION.matcher(value);
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException("Expected a duration like 800ms or 2s: " + value);
+            }
+            long amount = Long.parseLong(matcher.group(1));
+            return matcher.group(2).equals("s") ? Duration.ofSeconds(amount) : Duration.ofMillis(amount);
+        }
+    }
+
+    private record Batch(Instant createdAt, Instant endsAt, List<ObjectNode> results) {
+    }
+
+    private final Options options;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    /** How often each request body was sent, so retries draw new outcomes. */
+    private final Map<String, AtomicInteger> attempts = new ConcurrentHashMap<>();
+    private final Set<String> cachedPrefixes = ConcurrentHashMap.newKeySet();
+    private final Map<String, Batch> batches = new ConcurrentHashMap<>();
+    private final AtomicInteger batchIds = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    private FakeLlmServer(Options options) throws IOException {
+        this.options = options;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.setExecutor(executor);
+        server.createContext("/v1/messages", this::handle);
+    }
+
+    /**
+     * Start a server on a free local port.
+     */
+    public static FakeLlmServer start(Options options) throws IOException {
+        FakeLlmServer server = new FakeLlmServer(options);
+        server.server.start();
+        return server;
+    }
+
+    /**
+     * The URL to use as the client's base URL.
+     */
+    public String baseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    public long requests() {
+        return requests.get();
+    }
+
+    /**
+     * Requests answered with an error, injected or for exceeding the concurrency limit.
+     */
+    public long errors() {
+        return errors.get();
+    }
+
+    /**
+     * Message batches created.
+     */
+    public int batches() {
+        return batchIds.get();
+    }
+
+    public int peakInFlight() {
+        return peakInFlight.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            if (path.equals("/v1/messages") && exchange.getRequestMethod().equals("POST")) {
+                message(exchange, body);
+            } else if (path.equals("/v1/messages/batches") && exchange.getRequestMethod().equals("POST")) {
+                createBatch(exchange, body);
+            } else if (path.startsWith("/v1/messages/batches/") && exchange.getRequestMethod().equals("GET")) {
+                String[] parts = path.substring("/v1/messages/batches/".length()).split("/");
+                Batch batch = batches.get(parts[0]);
+                if (batch == null) {
+                    error(exchange, 404, "not_found_error");
+                } else if (parts.length == 2 && parts[1].equals("results")) {
+                    batchResults(exchange, parts[0], batch);
+                } else {
+                    json(exchange, 200, batch(parts[0], batch));
+                }
+            } else {
+                error(exchange, 404, "not_found_error");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void message(HttpExchange exchange, byte[] body) throws IOException, InterruptedException {
+        requests.incrementAndGet();
+        int running = inFlight.incrementAndGet();
+        peakInFlight.accumulateAndGet(running, Math::max);
+        try {
+            if (options.concurrency() > 0 && running > options.concurrency()) {
+                errors.incrementAndGet();
+                exchange.getResponseHeaders().add("retry-after", "1");
+                error(exchange, 429, "rate_limit_error");
+                return;
+            }
+            String key = new String(body, StandardCharsets.UTF_8);
+            Random random = new Random(Arrays.hashCode(new long[] {
+                options.seed(), key.hashCode(), attempts.computeIfAbsent(key, k -> new AtomicInteger()).incrementAndGet()}));
+            int status = drawError(random);
+            Duration latency = drawLatency(random);
+            if (status != 0) {
+                // Errors come back quickly, like a real overloaded or rate-limited service
+                Thread.sleep(latency.dividedBy(10));
+                if (status == 429 || status == 529) {
+                    exchange.getResponseHeaders().add("retry-after", "1");
+                }
+                error(exchange, status, errorType(status));
+                return;
+            }
+            JsonNode params = MAPPER.readTree(body);
+            String text = respond(params);
+            ObjectNode usage = usage(params, text);
+            exchange.getResponseHeaders().add("anthropic-ratelimit-requests-limit", "4000");
+            exchange.getResponseHeaders().add("anthropic-ratelimit-requests-remaining", "3999");
+            exchange.getResponseHeaders().add("anthropic-ratelimit-input-tokens-limit", "2000000");
+            exchange.getResponseHeaders().add("anthropic-ratelimit-input-tokens-remaining", "1999000");
+            if (params.path("stream").asBoolean()) {
+                stream(exchange, params, usage, text, latency);
+            } else {
+                Thread.sleep(latency);
+                json(exchange, 200, message(params, usage, text));
+            }
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private int drawError(Random random) {
+        double draw = random.nextDouble();
+        for (Map.Entry<Integer, Double> rate : options.errorRates().entrySet()) {
+            draw -= rate.getValue();
+            if (draw < 0) {
+                errors.incrementAndGet();
+                return rate.getKey();
+            }
+        }
+        return 0;
+    }
+
+    private Duration drawLatency(Random random) {
+        long jitter = options.jitter().toMillis();
+        long millis = options.latency().toMillis() + (jitter > 0 ? random.nextLong(-jitter, jitter + 1) : 0);
+        return Duration.ofMillis(Math.max(0, millis));
+    }
+
+    private static String errorType(int status) {
+        return switch (status) {
+            case 429 -> "rate_limit_error";
+            case 529 -> "overloaded_error";
+            case 400 -> "invalid_request_error";
+            case 401 -> "authentication_error";
+            case 404 -> "not_found_error";
+            default -> "api_error";
+        };
+    }
+
+    /**
+     * Send the response as server-sent events. The first delta comes after a quarter of the
+     * latency and the rest are spread over the remainder, so a client that stops reading early
+     * also finishes early.
+     */
+    private void stream(HttpExchange exchange, JsonNode params, ObjectNode usage, String text, Duration latency)
+            throws IOException, InterruptedException {
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        try {
+            Thread.sleep(latency.dividedBy(4));
+            ObjectNode start = MAPPER.createObjectNode().put("type", "message_start");
+            start.set("message", message(params, usage.deepCopy().put("output_tokens", 1), null));
+            event(out, start);
+            ObjectNode blockStart = MAPPER.createObjectNode().put("type", "content_block_start").put("index", 0);
+            blockStart.putObject("content_block").put("type", "text").put("text", "");
+            event(out, blockStart);
+            int deltas = (text.length() + DELTA_CHARS - 1) / DELTA_CHARS;
+            Duration pause = latency.minus(latency.dividedBy(4)).dividedBy(Math.max(1, deltas));
+            for (int i = 0; i < text.length(); i += DELTA_CHARS) {
+                ObjectNode delta = MAPPER.createObjectNode().put("type", "content_block_delta").put("index", 0);
+                delta.putObject("delta").put("type", "text_delta")
+                    .put("text", text.substring(i, Math.min(text.length(), i + DELTA_CHARS)));
+                event(out, delta);
+                Thread.sleep(pause);
+            }
+            event(out, MAPPER.createObjectNode().put("type", "content_block_stop").put("index", 0));
+            ObjectNode messageDelta = MAPPER.createObjectNode().put("type", "message_delta");
+            messageDelta.putObject("delta").put("stop_reason", "end_turn").putNull("stop_sequence");
+            messageDelta.putObject("usage").put("output_tokens", usage.get("output_tokens").asLong());
+            event(out, messageDelta);
+            event(out, MAPPER.createObjectNode().put("type", "message_stop"));
+        } catch (IOException e) {
+            // The client closed the stream, e.g. once it had the code block
+        }
+    }
+
+    private static void event(OutputStream out, ObjectNode event) throws IOException {
+        out.write(("event: " + event.get("type").asText() + "\ndata: " + MAPPER.writeValueAsString(event) + "\n\n")
+            .getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    /**
+     * A message; without text for the start of a stream.
+     */
+    private static ObjectNode message(JsonNode params, ObjectNode usage, String text) {
+        ObjectNode message = MAPPER.createObjectNode()
+            .put("id", "msg_fake_" + Integer.toHexString(params.hashCode()))
+            .put("type", "message")
+            .put("role", "assistant")
+            .put("model", params.path("model").asText());
+        if (text != null) {
+            message.putArray("content").addObject().put("type", "text").put("text", text).putNull("citations");
+            message.put("stop_reason", "end_turn");
+        } else {
+            message.putArray("content");
+            message.putNull("stop_reason");
+        }
+        message.putNull("stop_sequence");
+        message.set("usage", usage);
+        return message;
+    }
+
+    /**
+     * Token usage, four characters per token. The longest cacheable prefix seen before is read from
+     * the emulated cache, and the rest of the prefix up to the last breakpoint is written to it.
+     */
+    private ObjectNode usage(JsonNode params, String text) {
+        List<String> blocks = new ArrayList<>();
+        List<Boolean> breakpoints = new ArrayList<>();
+        for (JsonNode block : params.path("system")) {
+            blocks.add(block.path("text").asText());
+            breakpoints.add(block.has("cache_control"));
+        }
+        if (params.path("system").isTextual()) {
+            blocks.add(params.path("system").asText());
+            breakpoints.add(false);
+        }
+        for (JsonNode message : params.path("messages")) {
+            JsonNode content = message.path("content");
+            if (content.isTextual()) {
+                blocks.add(content.asText());
+                breakpoints.add(false);
+            }
+            for (JsonNode block : content) {
+                blocks.add(block.path("text").asText());
+                breakpoints.add(block.has("cache_control"));
+            }
+        }
+
+        StringBuilder prefix = new StringBuilder();
+        long total = 0;
+        long read = 0;
+        long cacheable = 0;
+        for (int i = 0; i < blocks.size(); i++) {
+            prefix.append(blocks.get(i)).append('\u0000');
+            total += blocks.get(i).length();
+            if (breakpoints.get(i)) {
+                cacheable = total;
+                if (!cachedPrefixes.add(prefix.toString())) {
+                    read = total;
+                }
+            }
+        }
+        return MAPPER.createObjectNode()
+            .put("input_tokens", (total - cacheable) / 4)
+            .put("output_tokens", text.length() / 4)
+            .put("cache_read_input_tokens", read / 4)
+            .put("cache_creation_input_tokens", (cacheable - read) / 4);
+    }
+
+    /**
+     * The response: a test per mutation that calls the mutated method, then prose.
+     */
+    private static String respond(JsonNode params) {
+        StringBuilder prompt = new StringBuilder();
+        for (JsonNode message : params.path("messages")) {
+            JsonNode content = message.path("content");
+            if (content.isTextual()) {
+                prompt.append(content.asText());
+            }
+            for (JsonNode block : content) {
+                prompt.append(block.path("text").asText());
+            }
+        }
+        String mutatedClass = "Subject";
+        String mutatedMethod = "method";
+        Matcher group = GROUP.matcher(prompt);
+        Matcher singleClass = SINGLE_CLASS.matcher(prompt);
+        Matcher singleMethod = SINGLE_METHOD.matcher(prompt);
+        if (group.find()) {
+            mutatedClass = group.group(1);
+            mutatedMethod = group.group(2);
+        } else if (singleClass.find() && singleMethod.find()) {
+            mutatedClass = singleClass.group(1);
+            mutatedMethod = singleMethod.group(1);
+        }
+        String simpleName = mutatedClass.substring(Math.max(mutatedClass.lastIndexOf('.'), mutatedClass.lastIndexOf('$')) + 1);
+        Set<String> labels = new LinkedHashSet<>();
+        Matcher label = LABEL.matcher(prompt);
+        while (label.find()) {
+            labels.add(label.group(1));
+        }
+        if (labels.isEmpty()) {
+            labels.add("");
+        }
+
+        StringBuilder text = new StringBuilder("Here is a test that kills the mutation:\n\n```java\n");
+        for (String mutant : labels) {
+            if (!mutant.isEmpty()) {
+                text.append("// Kills: ").append(mutant).append('\n');
+            }
+            text.append("@Test\n")
+                .append("void ").append(mutatedMethod).append("DetectsMutation").append(mutant).append("() {\n")
+                .append("    ").append(simpleName).append(" subject = new ").append(simpleName).append("();\n")
+                .append("    assertDoesNotThrow(() -> subject.").append(mutatedMethod).append("());\n")
+                .append("}\n");
+        }
+        text.append("```\n\n").append(PROSE.repeat(3));
+        return text.toString();
+    }
+
+    private void createBatch(HttpExchange exchange, byte[] body) throws IOException {
+        JsonNode batch = MAPPER.readTree(body);
+        String key = new String(body, StandardCharsets.UTF_8);
+        Random random = new Random(Arrays.hashCode(new long[] {options.seed(), key.hashCode()}));
+        List<ObjectNode> results = new ArrayList<>();
+        for (JsonNode request : batch.path("requests")) {
+            ObjectNode result = MAPPER.createObjectNode().put("custom_id", request.path("custom_id").asText());
+            int status = drawError(random);
+            if (status != 0) {
+                ObjectNode errored = result.putObject("result").put("type", "errored");
+                errored.putObject("error").put("type", "error").putObject("error")
+                    .put("type", errorType(status)).put("message", "Injected error " + status);
+            } else {
+                JsonNode params = request.path("params");
+                String text = respond(params);
+                result.putObject("result").put("type", "succeeded")
+                    .set("message", message(params, usage(params, text), text));
+            }
+            results.add(result);
+        }
+        String id = "msgbatch_fake_" + batchIds.incrementAndGet();
+        Instant now = Instant.now();
+        Batch created = new Batch(now, now.plus(drawLatency(random)), results);
+        batches.put(id, created);
+        json(exchange, 200, batch(id, created));
+    }
+
+    private ObjectNode batch(String id, Batch batch) {
+        boolean ended = !Instant.now().isBefore(batch.endsAt());
+        long succeeded = batch.results().stream()
+            .filter(result -> result.path("result").path("type").asText().equals("succeeded")).count();
+        ObjectNode node = MAPPER.createObjectNode()
+            .put("id", id)
+            .put("type", "message_batch")
+            .put("processing_status", ended ? "ended" : "in_progress")
+            .put("created_at", batch.createdAt().toString())
+            .put("expires_at", batch.createdAt().plus(Duration.ofDays(1)).toString());
+        node.putObject("request_counts")
+            .put("processing", ended ? 0 : batch.results().size())
+            .put("succeeded", ended ? succeeded : 0)
+            .put("errored", ended ? batch.results().size() - succeeded : 0)
+            .put("canceled", 0)
+            .put("expired", 0);
+        node.putNull("archived_at");
+        node.putNull("cancel_initiated_at");
+        if (ended) {
+            node.put("ended_at", batch.endsAt().toString());
+            node.put("results_url", baseUrl() + "/v1/messages/batches/" + id + "/results");
+        } else {
+            node.putNull("ended_at");
+            node.putNull("results_url");
+        }
+        return node;
+    }
+
+    private void batchResults(HttpExchange exchange, String id, Batch batch) throws IOException {
+        if (Instant.now().isBefore(batch.endsAt())) {
+            error(exchange, 404, "not_found_error");
+            return;
+        }
+        StringBuilder lines = new StringBuilder();
+        for (ObjectNode result : batch.results()) {
+            lines.append(MAPPER.writeValueAsString(result)).append('\n');
+        }
+        byte[] bytes = lines.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/x-jsonl");
+        exchange.sendResponseHeaders(200, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    private void error(HttpExchange exchange, int status, String type) throws IOException {
+        ObjectNode error = MAPPER.createObjectNode().put("type", "error");
+        error.putObject("error").put("type", type).put("message", "Fake server answered " + status);
+        json(exchange, status, error);
+    }
+
+    private static void json(HttpExchange exchange, int status, ObjectNode body) throws IOException {
+        byte[] bytes = MAPPER.writeValueAsBytes(body);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+}
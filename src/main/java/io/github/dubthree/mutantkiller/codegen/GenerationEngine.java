@@ -0,0 +1,440 @@
+package io.github.dubthree.mutantkiller.codegen;
+
+import com.anthropic.errors.AnthropicIoException;
+import com.anthropic.errors.AnthropicServiceException;
+import io.github.dubthree.mutantkiller.analysis.MutantGroup;
+import io.github.dubthree.mutantkiller.config.MutantKillerConfig;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Generates test improvements for many mutations concurrently.
+ *
+ * <p>Every request runs on its own virtual thread. Before it is sent it must pass the
+ * {@link RateLimiter} and find a free slot in the concurrency window. The window starts at the
+ * configured maximum of in-flight requests and adapts by AIMD: it grows by one slot per window of
+ * successful requests and halves when the server answers 429 (rate limited) or 529 (overloaded).
+ * Failed requests are retried after the server's retry-after, or with jittered exponential backoff.
+ * Responses already in the improver's {@link ResponseCache} are used without a request.
+ *
+ * <p>Requests sharing a cacheable prefix (the same test class) wait until the first of them has
+ * been answered, which writes the prefix to the provider's prompt cache, so that they read it
+ * instead of writing it again. They do not wait for its retries or verification.
+ *
+ * <p>With more than one candidate configured, several diverse requests are sent for each group at
+ * once. The first improvement that passes the {@link CandidateVerifier} is taken and the other
+ * requests are cancelled. If none passes, the first candidate that produced code is used.
+ */
+public final class GenerationEngine implements AutoCloseable {
+
+    /**
+     * The result of generating an improvement for one piece of work.
+     *
+     * @param error the exception that prevented generation, after retries; null on success
+     */
+    public record Completion<T>(T tag, Optional<TestImprovement> improvement, Exception error) {
+    }
+
+    private static final int MAX_ATTEMPTS = 5;
+    /** Shorter prompt prefixes are not cached by the provider. */
+    private static final int MIN_CACHEABLE_TOKENS = 1024;
+    private static final Duration BASE_BACKOFF = Duration.ofSeconds(1);
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(60);
+    /** Throttling reported within this interval of a decrease belongs to the same congestion event. */
+    private static final long DECREASE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final TestImprover improver;
+    private final CandidateVerifier verifier;
+    private final RateLimiter limiter;
+    private final int maxInFlight;
+    private final int candidates;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, CompletableFuture<Void>> prefixes = new ConcurrentHashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition slotFreed = lock.newCondition();
+    private double window;
+    private int inFlight;
+    private long lastDecrease;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong inputTokens = new AtomicLong();
+    private final AtomicLong outputTokens = new AtomicLong();
+    private final AtomicLong cacheReadTokens = new AtomicLong();
+    private final AtomicLong cacheWriteTokens = new AtomicLong();
+    private final AtomicLong stoppedEarly = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public GenerationEngine(TestImprover improver, MutantKillerConfig config) {
+        this(improver, config, new StaticVerifier());
+    }
+
+    public GenerationEngine(TestImprover improver, MutantKillerConfig config, CandidateVerifier verifier) {
+        this.improver = improver;
+        this.verifier = verifier;
+        this.limiter = new RateLimiter(config.requestsPerMinute(), config.tokensPerMinute());
+        this.maxInFlight = config.maxInFlight();
+        this.candidates = config.candidates();
+        this.window = maxInFlight;
+        this.lastDecrease = System.nanoTime() - DECREASE_INTERVAL_NANOS;
+    }
+
+    /**
+     * Start generating an improvement for every group of mutations. The returned results yield each
+     * completion as soon as it is done, in completion order rather than submission order.
+     */
+    public <T> Results<T> submitAll(Map<T, MutantGroup> work) {
+        Results<T> results = new Results<>(work.size());
+        work.forEach((tag, group) -> executor.execute(() -> results.completed.add(run(tag, group))));
+        return results;
+    }
+
+    private <T> Completion<T> run(T tag, MutantGroup group) {
+        try {
+            return new Completion<>(tag, generate(group), null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new Completion<>(tag, Optional.empty(), e);
+        } catch (RuntimeException e) {
+            return new Completion<>(tag, Optional.empty(), e);
+        }
+    }
+
+    private Optional<TestImprovement> generate(MutantGroup group) throws InterruptedException {
+        TestImprover.Request request = improver.request(group);
+        Optional<String> cached = improver.cachedResponse(request);
+        if (cached.isPresent()) {
+            Optional<TestImprovement> improvement = improver.toImprovement(group, cached.get());
+            if (candidates == 1 || improvement.isPresent() && verifier.check(improvement.get()).isEmpty()) {
+                return improvement;
+            }
+        }
+
+        // The first request with a prefix writes it to the prompt cache; the others wait so they can read it
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        CompletableFuture<Void> writing = request.sharedPrefix().length() / 4 >= MIN_CACHEABLE_TOKENS
+            ? prefixes.putIfAbsent(request.sharedPrefix(), written)
+            : null;
+        if (writing != null) {
+            try {
+                writing.get();
+            } catch (ExecutionException e) {
+                // Never completed exceptionally
+            }
+        }
+        try {
+            return candidates > 1 ? speculate(group, written) : send(group, request, written);
+        } finally {
+            // In case no request was sent
+            written.complete(null);
+        }
+    }
+
+    /**
+     * Generate several candidates concurrently and take the first that passes verification.
+     * The others are interrupted, which aborts their requests.
+     *
+     * @param written completed when the first candidate's response (or failure) arrives
+     */
+    private Optional<TestImprovement> speculate(MutantGroup group, CompletableFuture<Void> written)
+            throws InterruptedException {
+        List<TestImprovement> unverified = Collections.synchronizedList(new ArrayList<>());
+        List<Callable<TestImprovement>> tasks = new ArrayList<>();
+        for (int candidate = 0; candidate < candidates; candidate++) {
+            TestImprover.Request request = improver.request(group, candidate);
+            tasks.add(() -> {
+                Optional<String> cached = improver.cachedResponse(request);
+                Optional<TestImprovement> improvement = cached.isPresent()
+                    ? improver.toImprovement(group, cached.get())
+                    : send(group, request, written);
+                if (improvement.isEmpty()) {
+                    throw new RejectedCandidateException("no code");
+                }
+                Optional<String> problem = verifier.check(improvement.get());
+                if (problem.isPresent()) {
+                    rejected.incrementAndGet();
+                    unverified.add(improvement.get());
+                    throw new RejectedCandidateException(problem.get());
+                }
+                return improvement.get();
+            });
+        }
+        try {
+            return Optional.of(executor.invokeAny(tasks));
+        } catch (ExecutionException e) {
+            // No candidate passed; better an unverified test than none
+            if (!unverified.isEmpty()) {
+                return Optional.of(unverified.get(0));
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            return Optional.empty();
+        }
+    }
+
+    /** A candidate that produced no code or failed verification. */
+    private static final class RejectedCandidateException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        RejectedCandidateException(String reason) {
+            super(reason);
+        }
+    }
+
+    /**
+     * Send a request, retrying failures that may pass later.
+     *
+     * @param written completed as soon as the first attempt is answered or fails, so that requests
+     *                waiting to read the shared prefix from the prompt cache go ahead without
+     *                waiting for retries, verification or other candidates
+     */
+    private Optional<TestImprovement> send(MutantGroup group, TestImprover.Request request,
+                                           CompletableFuture<Void> written) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            limiter.acquire(request.estimatedInputTokens());
+            Duration delay;
+            admit();
+            try {
+                requests.incrementAndGet();
+                TestImprover.Reply reply;
+                try {
+                    reply = improver.send(request);
+                } finally {
+                    written.complete(null);
+                }
+                limiter.update(reply.headers());
+                increase();
+                inputTokens.addAndGet(reply.inputTokens());
+                outputTokens.addAndGet(reply.outputTokens());
+                cacheReadTokens.addAndGet(reply.cacheReadTokens());
+                cacheWriteTokens.addAndGet(reply.cacheWriteTokens());
+                if (reply.stoppedEarly()) {
+                    stoppedEarly.incrementAndGet();
+                }
+                // Tokens read from the prompt cache do not count against the input token rate limit
+                limiter.settle(request.estimatedInputTokens(), reply.inputTokens() + reply.cacheWriteTokens());
+                return improver.received(group, request, reply.text());
+            } catch (AnthropicServiceException e) {
+                limiter.update(e.headers());
+                int status = e.statusCode();
+                boolean overloaded = status == 429 || status == 529;
+                if (attempt == MAX_ATTEMPTS || !(overloaded || status >= 500 || status == 408)) {
+                    throw e;
+                }
+                if (overloaded) {
+                    throttled.incrementAndGet();
+                    decrease();
+                }
+                Duration retryAfter = RateLimiter.retryAfter(e.headers());
+                if (retryAfter != null) {
+                    // The server's word applies to every request, not just this one
+                    limiter.pause(retryAfter);
+                }
+                delay = retryAfter != null ? retryAfter : backoff(attempt);
+            } catch (AnthropicIoException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+                delay = backoff(attempt);
+            } finally {
+                release();
+            }
+            retries.incrementAndGet();
+            Thread.sleep(delay);
+        }
+    }
+
+    /**
+     * Exponential backoff with jitter, so throttled requests do not return in lockstep.
+     */
+    private static Duration backoff(int attempt) {
+        long max = Math.min(MAX_BACKOFF.toMillis(), BASE_BACKOFF.toMillis() << (attempt - 1));
+        return Duration.ofMillis(max / 2 + ThreadLocalRandom.current().nextLong(max / 2 + 1));
+    }
+
+    private void admit() throws InterruptedException {
+        lock.lock();
+        try {
+            while (inFlight >= (int) window) {
+                slotFreed.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            slotFreed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Additive increase: one slot per window of successful requests. */
+    private void increase() {
+        lock.lock();
+        try {
+            window = Math.min(maxInFlight, window + 1 / window);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Multiplicative decrease, once per congestion event. */
+    private void decrease() {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            if (now - lastDecrease >= DECREASE_INTERVAL_NANOS) {
+                window = Math.max(1, window / 2);
+                lastDecrease = now;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The current concurrency window, i.e. how many requests may be in flight.
+     */
+    public int concurrency() {
+        lock.lock();
+        try {
+            return (int) window;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long requests() {
+        return requests.get();
+    }
+
+    public long retries() {
+        return retries.get();
+    }
+
+    /**
+     * Requests answered with 429 or 529.
+     */
+    public long throttled() {
+        return throttled.get();
+    }
+
+    /**
+     * Input tokens neither read from nor written to the prompt cache.
+     */
+    public long inputTokens() {
+        return inputTokens.get();
+    }
+
+    public long outputTokens() {
+        return outputTokens.get();
+    }
+
+    /**
+     * Input tokens read from the provider's prompt cache.
+     */
+    public long cacheReadTokens() {
+        return cacheReadTokens.get();
+    }
+
+    /**
+     * Input tokens written to the provider's prompt cache.
+     */
+    public long cacheWriteTokens() {
+        return cacheWriteTokens.get();
+    }
+
+    /**
+     * Streamed responses closed once their code block was complete, or because none was opened in time.
+     */
+    public long stoppedEarly() {
+        return stoppedEarly.get();
+    }
+
+    /**
+     * Speculative candidates that failed verification.
+     */
+    public long rejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Cancel requests that have not completed yet.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Completions of submitted work, in the order they finish. Iterating blocks until the next one is done.
+     */
+    public static final class Results<T> implements Iterable<Completion<T>> {
+        private final BlockingQueue<Completion<T>> completed = new LinkedBlockingQueue<>();
+        private final int size;
+
+        private Results(int size) {
+            this.size = size;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<Completion<T>> iterator() {
+            return new Iterator<>() {
+                private int taken;
+
+                @Override
+                public boolean hasNext() {
+                    return taken < size;
+                }
+
+                @Override
+                public Completion<T> next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    try {
+                        Completion<T> completion = completed.take();
+                        taken++;
+                        return completion;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while waiting for generated tests", e);
+                    }
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package io.github.dubthree.mutantkiller.codegen;
+
+import com.anthropic.core.http.StreamResponse;
+import com.anthropic.models.messages.batches.MessageBatch;
+import com.anthropic.models.messages.batches.MessageBatchIndividualResponse;
+import io.github.dubthree.mutantkiller.config.MutantKillerConfig;
+
+import java.util.Collection;
+
+/**
+ * Sends requests to a model. Besides the Anthropic API, responses can be recorded to and replayed
+ * from disk, so runs can be repeated offline and compared.
+ */
+interface LlmClient {
+
+    /**
+     * Send a request and wait for the whole response.
+     */
+    TestImprover.Reply send(TestImprover.Request request);
+
+    /**
+     * Stream a response, closing it as soon as the first code block is complete.
+     */
+    TestImprover.Reply stream(TestImprover.Request request);
+
+    /**
+     * Submit requests as one message batch, each identified by its response cache key.
+     */
+    MessageBatch createBatch(Collection<TestImprover.Request> requests);
+
+    MessageBatch retrieveBatch(String batchId);
+
+    StreamResponse<MessageBatchIndividualResponse> batchResults(String batchId);
+
+    /**
+     * The client for a configuration: replaying recordings if a replay directory is set, otherwise
+     * the Anthropic API, recording its responses if a record directory is set.
+     */
+    static LlmClient create(MutantKillerConfig config) {
+        if (config.replayDir() != null) {
+            return new RecordingLlmClient(config.replayDir(), null);
+        }
+        LlmClient client = new AnthropicLlmClient(config);
+        return config.recordDir() != null ? new RecordingLlmClient(config.recordDir(), client) : client;
+    }
+}
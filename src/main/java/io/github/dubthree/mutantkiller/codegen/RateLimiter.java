@@ -0,0 +1,180 @@
+package io.github.dubthree.mutantkiller.codegen;
+
+import com.anthropic.core.http.Headers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Client-side token buckets for the API's request and input-token rate limits.
+ *
+ * <p>Both buckets refill continuously at their per-minute limit. They start from the configured
+ * limits and are corrected from the {@code anthropic-ratelimit-*} headers of every response, so
+ * the client never assumes more capacity than the server reports. A {@code retry-after} pauses
+ * all callers until the server accepts requests again.
+ */
+final class RateLimiter {
+
+    private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Bucket requests;
+    private final Bucket tokens;
+    private long pausedUntil;
+
+    RateLimiter(long requestsPerMinute, long tokensPerMinute) {
+        long now = System.nanoTime();
+        this.requests = new Bucket(requestsPerMinute, now);
+        this.tokens = new Bucket(tokensPerMinute, now);
+        this.pausedUntil = now;
+    }
+
+    /**
+     * Wait until one request with about {@code estimatedTokens} input tokens may be sent.
+     */
+    void acquire(long estimatedTokens) throws InterruptedException {
+        while (true) {
+            long wait;
+            lock.lock();
+            try {
+                long now = System.nanoTime();
+                wait = pausedUntil - now;
+                if (wait <= 0) {
+                    requests.refill(now);
+                    tokens.refill(now);
+                    wait = Math.max(requests.waitFor(1), tokens.waitFor(estimatedTokens));
+                    if (wait <= 0) {
+                        requests.take(1);
+                        tokens.take(estimatedTokens);
+                        return;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+            // Callers run on virtual threads, so sleeping is cheap
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+
+    /**
+     * Return the difference between the estimated and the actual input tokens of a request.
+     */
+    void settle(long estimatedTokens, long actualTokens) {
+        lock.lock();
+        try {
+            tokens.give(estimatedTokens - actualTokens);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hold back every caller for the given time, e.g. the server's retry-after.
+     */
+    void pause(Duration duration) {
+        lock.lock();
+        try {
+            pausedUntil = Math.max(pausedUntil, System.nanoTime() + duration.toNanos());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Align the buckets with the limits and remaining capacity reported by the server.
+     */
+    void update(Headers headers) {
+        OptionalLong requestLimit = header(headers, "anthropic-ratelimit-requests-limit");
+        OptionalLong requestsRemaining = header(headers, "anthropic-ratelimit-requests-remaining");
+        OptionalLong tokenLimit = header(headers, "anthropic-ratelimit-input-tokens-limit");
+        OptionalLong tokensRemaining = header(headers, "anthropic-ratelimit-input-tokens-remaining");
+        if (tokenLimit.isEmpty()) {
+            tokenLimit = header(headers, "anthropic-ratelimit-tokens-limit");
+            tokensRemaining = header(headers, "anthropic-ratelimit-tokens-remaining");
+        }
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            requests.sync(requestLimit, requestsRemaining, now);
+            tokens.sync(tokenLimit, tokensRemaining, now);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The server's retry-after, if it sent one.
+     */
+    static Duration retryAfter(Headers headers) {
+        List<String> values = headers.values("retry-after");
+        if (values.isEmpty()) {
+            return null;
+        }
+        try {
+            return Duration.ofMillis((long) (Double.parseDouble(values.get(0).trim()) * 1000));
+        } catch (NumberFormatException e) {
+            // An HTTP date; the caller falls back to its own backoff
+            return null;
+        }
+    }
+
+    private static OptionalLong header(Headers headers, String name) {
+        List<String> values = headers.values(name);
+        if (values.isEmpty()) {
+            return OptionalLong.empty();
+        }
+        try {
+            return OptionalLong.of(Long.parseLong(values.get(0).trim()));
+        } catch (NumberFormatException e) {
+            return OptionalLong.empty();
+        }
+    }
+
+    /**
+     * A bucket refilling at its capacity per minute. Not thread-safe; guarded by the limiter's lock.
+     */
+    private static final class Bucket {
+        private double capacity;
+        private double available;
+        private long lastRefill;
+
+        Bucket(long perMinute, long now) {
+            this.capacity = perMinute;
+            this.available = perMinute;
+            this.lastRefill = now;
+        }
+
+        void refill(long now) {
+            available = Math.min(capacity, available + (now - lastRefill) * capacity / NANOS_PER_MINUTE);
+            lastRefill = now;
+        }
+
+        /** Nanoseconds until the amount is available; a request larger than the bucket waits for a full one. */
+        long waitFor(long amount) {
+            double needed = Math.min(amount, capacity) - available;
+            return needed <= 0 ? 0 : (long) Math.ceil(needed * NANOS_PER_MINUTE / capacity);
+        }
+
+        void take(long amount) {
+            available -= Math.min(amount, capacity);
+        }
+
+        void give(long amount) {
+            available = Math.min(capacity, available + amount);
+        }
+
+        void sync(OptionalLong limit, OptionalLong remaining, long now) {
+            refill(now);
+            if (limit.isPresent() && limit.getAsLong() > 0) {
+                capacity = limit.getAsLong();
+            }
+            if (remaining.isPresent()) {
+                available = Math.min(available, remaining.getAsLong());
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package io.github.dubthree.mutantkiller.codegen;
+
+import com.anthropic.core.http.Headers;
+import com.anthropic.core.http.StreamResponse;
+import com.anthropic.models.messages.batches.MessageBatch;
+import com.anthropic.models.messages.batches.MessageBatchIndividualResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.dubthree.mutantkiller.codegen.TestImprover.Reply;
+import io.github.dubthree.mutantkiller.codegen.TestImprover.Request;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.function.Function;
+
+/**
+ * Records responses to disk and replays them, so a run can be repeated without the API: to
+ * reproduce a problem, or to compare changes to concurrency, caching or parsing on the same inputs.
+ *
+ * <p>Each response is stored as {@code <dir>/<response cache key>.json} with its token usage and
+ * how long it took. A replayed response takes as long again, so replays keep the timing of the
+ * recorded run. With a delegate, responses are recorded and requests not recorded yet are sent to
+ * it; without one, a request that was not recorded fails. Batches are not recorded.
+ */
+final class RecordingLlmClient implements LlmClient {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Path dir;
+    private final LlmClient delegate;
+
+    /**
+     * @param delegate the client that answers requests not recorded yet, or null to only replay
+     */
+    RecordingLlmClient(Path dir, LlmClient delegate) {
+        this.dir = dir;
+        this.delegate = delegate;
+    }
+
+    /**
+     * A recorded response.
+     */
+    record Recording(String text, long inputTokens, long outputTokens, long cacheReadTokens,
+                     long cacheWriteTokens, boolean stoppedEarly, long latencyMillis) {
+    }
+
+    @Override
+    public Reply send(Request request) {
+        return replayOrRecord(request, delegate != null ? delegate::send : null);
+    }
+
+    @Override
+    public Reply stream(Request request) {
+        return replayOrRecord(request, delegate != null ? delegate::stream : null);
+    }
+
+    private Reply replayOrRecord(Request request, Function<Request, Reply> send) {
+        Path file = dir.resolve(request.cacheKey() + ".json");
+        if (Files.exists(file)) {
+            return replay(file);
+        }
+        if (send == null) {
+            throw new IllegalStateException("No recorded response for request " + request.cacheKey() + " in " + dir);
+        }
+        long start = System.nanoTime();
+        Reply reply = send.apply(request);
+        long latencyMillis = (System.nanoTime() - start) / 1_000_000;
+        record(file, new Recording(reply.text(), reply.inputTokens(), reply.outputTokens(),
+            reply.cacheReadTokens(), reply.cacheWriteTokens(), reply.stoppedEarly(), latencyMillis));
+        return reply;
+    }
+
+    private static Reply replay(Path file) {
+        Recording recording;
+        try {
+            recording = MAPPER.readValue(file.toFile(), Recording.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read recorded response " + file, e);
+        }
+        try {
+            Thread.sleep(recording.latencyMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while replaying " + file, e);
+        }
+        // No rate-limit headers: replays are not rate limited
+        return new Reply(recording.text(), Headers.builder().build(), recording.inputTokens(),
+            recording.outputTokens(), recording.cacheReadTokens(), recording.cacheWriteTokens(),
+            recording.stoppedEarly());
+    }
+
+    /**
+     * Write a recording atomically, so a concurrent or interrupted run never reads a partial one.
+     */
+    private void record(Path file, Recording recording) {
+        try {
+            Files.createDirectories(dir);
+            Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+            try {
+                MAPPER.writerWithDefaultPrettyPrinter().writeValue(temp.toFile(), recording);
+                try {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            // The response itself is fine; only this recording is lost
+            System.err.println("Warning: could not record response to " + file + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public MessageBatch createBatch(Collection<Request> requests) {
+        return batchDelegate().createBatch(requests);
+    }
+
+    @Override
+    public MessageBatch retrieveBatch(String batchId) {
+        return batchDelegate().retrieveBatch(batchId);
+    }
+
+    @Override
+    public StreamResponse<MessageBatchIndividualResponse> batchResults(String batchId) {
+        return batchDelegate().batchResults(batchId);
+    }
+
+    private LlmClient batchDelegate() {
+        if (delegate == null) {
+            throw new UnsupportedOperationException("Batches cannot be replayed");
+        }
+        return delegate;
+    }
+}
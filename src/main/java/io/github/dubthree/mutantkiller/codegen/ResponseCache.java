@@ -0,0 +1,244 @@
+package io.github.dubthree.mutantkiller.codegen;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content-addressed cache of model responses on disk, so a rerun does not pay for the same prompt twice.
+ *
+ * <p>Entries are keyed by a SHA-256 of the model, the prompts and the generation parameters and are
+ * stored gzipped as {@code <dir>/<first two hex digits>/<key>.gz}. A hit refreshes the entry's
+ * modification time, which serves as the access time for LRU eviction once the directory grows
+ * beyond its size limit. Entries older than the TTL are treated as missing. The cache is
+ * best-effort: I/O errors count as misses and never fail a generation.
+ */
+public final class ResponseCache {
+
+    public static final long DEFAULT_MAX_BYTES = 256L << 20;
+
+    private static final String SUFFIX = ".gz";
+    /** Eviction frees space down to this share of the limit, so it does not run on every write. */
+    private static final double EVICTION_TARGET = 0.9;
+
+    private final Path dir;
+    private final Duration ttl;
+    private final long maxBytes;
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    /** Bytes on disk; -1 until first measured. */
+    private final AtomicLong size = new AtomicLong(-1);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ResponseCache(Path dir, Duration ttl) {
+        this(dir, ttl, DEFAULT_MAX_BYTES);
+    }
+
+    public ResponseCache(Path dir, Duration ttl, long maxBytes) {
+        this.dir = dir;
+        this.ttl = ttl;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * The key for a request.
+     *
+     * @param temperature the sampling temperature, or null for the API default
+     */
+    public static String key(String model, String systemPrompt, String prompt, long maxTokens, Double temperature) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        // Length-prefixed, so that moving text between fields changes the key
+        for (String part : new String[] {model, systemPrompt, prompt, String.valueOf(maxTokens), String.valueOf(temperature)}) {
+            byte[] bytes = part.getBytes(StandardCharsets.UTF_8);
+            digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).flip());
+            digest.update(bytes);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * The cached response for a key, unless it is missing or expired.
+     */
+    public Optional<String> get(String key) {
+        Path entry = entry(key);
+        try {
+            FileTime modified = Files.getLastModifiedTime(entry);
+            if (modified.toMillis() + ttl.toMillis() < System.currentTimeMillis()) {
+                delete(entry);
+                misses.incrementAndGet();
+                return Optional.empty();
+            }
+            String value;
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(entry))) {
+                value = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            hits.incrementAndGet();
+            return Optional.of(value);
+        } catch (NoSuchFileException e) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        } catch (IOException e) {
+            // Unreadable or truncated entry: drop it
+            delete(entry);
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Store a response, evicting the least recently used entries if the cache grows too large.
+     */
+    public void put(String key, String value) {
+        Path entry = entry(key);
+        try {
+            Files.createDirectories(entry.getParent());
+            Path temp = Files.createTempFile(entry.getParent(), key, ".tmp");
+            try {
+                try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))) {
+                    out.write(value.getBytes(StandardCharsets.UTF_8));
+                }
+                long written = Files.size(temp);
+                // A replaced entry's bytes are freed again
+                long replaced = entrySize(entry);
+                try {
+                    Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+                }
+                if (size() + written - replaced > maxBytes) {
+                    evict();
+                } else {
+                    size.addAndGet(written - replaced);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not write response cache entry " + entry + ": " + e.getMessage());
+        }
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public long evictions() {
+        return evictions.get();
+    }
+
+    private static long entrySize(Path entry) {
+        try {
+            return Files.size(entry);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private Path entry(String key) {
+        return dir.resolve(key.substring(0, 2)).resolve(key + SUFFIX);
+    }
+
+    private long size() throws IOException {
+        long current = size.get();
+        if (current >= 0) {
+            return current;
+        }
+        long measured = 0;
+        for (Entry entry : entries()) {
+            measured += entry.size();
+        }
+        size.compareAndSet(-1, measured);
+        return size.get();
+    }
+
+    /**
+     * Delete expired entries, then the least recently used ones until the cache is below its target size.
+     */
+    private void evict() throws IOException {
+        if (!evictionLock.tryLock()) {
+            // Another thread is already evicting
+            return;
+        }
+        try {
+            List<Entry> entries = entries();
+            entries.sort(Comparator.comparingLong(Entry::accessed));
+            long total = entries.stream().mapToLong(Entry::size).sum();
+            long expiredBefore = System.currentTimeMillis() - ttl.toMillis();
+            long target = (long) (maxBytes * EVICTION_TARGET);
+            for (Entry entry : entries) {
+                if (total <= target && entry.accessed() >= expiredBefore) {
+                    break;
+                }
+                if (delete(entry.path())) {
+                    total -= entry.size();
+                    evictions.incrementAndGet();
+                }
+            }
+            size.set(total);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private List<Entry> entries() throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return entries;
+        }
+        try (Stream<Path> files = Files.walk(dir, 2)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().endsWith(SUFFIX)) {
+                    try {
+                        entries.add(new Entry(file, Files.size(file), Files.getLastModifiedTime(file).toMillis()));
+                    } catch (NoSuchFileException e) {
+                        // Evicted concurrently
+                    }
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static boolean delete(Path entry) {
+        try {
+            return Files.deleteIfExists(entry);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private record Entry(Path path, long size, long accessed) {
+    }
+}
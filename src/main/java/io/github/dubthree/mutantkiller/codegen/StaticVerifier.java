@@ -0,0 +1,46 @@
+package io.github.dubthree.mutantkiller.codegen;
+
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import io.github.dubthree.mutantkiller.analysis.JavaParserPool;
+import io.github.dubthree.mutantkiller.analysis.TestClassSummarizer;
+import io.github.dubthree.mutantkiller.pit.MutationResult;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Verifies generated tests without building the project: the code must parse, contain at least
+ * one test method, have a test for every mutation of its group, and refer to the mutated method.
+ */
+public final class StaticVerifier implements CandidateVerifier {
+
+    @Override
+    public Optional<String> check(TestImprovement candidate) {
+        List<MethodDeclaration> methods;
+        try {
+            methods = JavaParserPool.shared()
+                .parse("class Temp {\n" + candidate.generatedCode() + "\n}")
+                .findAll(MethodDeclaration.class);
+        } catch (ParseProblemException e) {
+            return Optional.of("does not parse");
+        }
+        if (methods.stream().noneMatch(TestClassSummarizer::isTest)) {
+            return Optional.of("has no test method");
+        }
+        for (Map.Entry<MutationResult, List<String>> entry : candidate.tests().entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                return Optional.of("has no test for line " + entry.getKey().lineNumber());
+            }
+        }
+        // Helpers count too: a test may reach the mutated method through one
+        MutationResult mutation = candidate.group().first().mutation();
+        boolean refers = methods.stream().anyMatch(method ->
+            TestClassSummarizer.references(method, mutation.mutatedClass(), mutation.mutatedMethod()) > 0);
+        if (!refers) {
+            return Optional.of("does not call " + mutation.mutatedMethod());
+        }
+        return Optional.empty();
+    }
+}
@@ -1,30 +1,105 @@
 package io.github.dubthree.mutantkiller.codegen;
 
-import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.comments.Comment;
+import io.github.dubthree.mutantkiller.analysis.JavaParserPool;
 import io.github.dubthree.mutantkiller.analysis.MutantAnalysis;
+import io.github.dubthree.mutantkiller.analysis.MutantGroup;
+import io.github.dubthree.mutantkiller.pit.MutationResult;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Represents a proposed test improvement with the ability to apply it.
+ *
+ * <p>An improvement for a group of mutations attributes each generated test to the mutations named
+ * in its {@code // Kills: M1, M2} comment. Tests without one are attributed to every mutation in the
+ * group. The comments are removed from the code that is applied.
  */
 public class TestImprovement {
 
+    private static final Pattern KILLS_COMMENT = Pattern.compile("(?m)^[ \\t]*//[ \\t]*Kills:.*(\\R|$)");
+    private static final Pattern LABEL = Pattern.compile("\\bM(\\d+)\\b");
+
+    private final MutantGroup group;
     private final MutantAnalysis analysis;
     private final String generatedCode;
+    private final Map<MutationResult, List<String>> tests;
+    private final Path testDir;
     private final boolean dryRun;
 
-    public TestImprovement(MutantAnalysis analysis, String generatedCode, boolean dryRun) {
-        this.analysis = analysis;
-        this.generatedCode = generatedCode;
+    public TestImprovement(MutantAnalysis analysis, String generatedCode, Path testDir, boolean dryRun) {
+        this(MutantGroup.of(analysis), generatedCode, testDir, dryRun);
+    }
+
+    /**
+     * @param testDir the test source root new test files are created in, or null for
+     *                {@code src/test/java}
+     */
+    public TestImprovement(MutantGroup group, String generatedCode, Path testDir, boolean dryRun) {
+        this.group = group;
+        this.analysis = group.first();
+        this.tests = attribute(group, generatedCode);
+        this.generatedCode = group.size() > 1 ? KILLS_COMMENT.matcher(generatedCode).replaceAll("") : generatedCode;
+        this.testDir = testDir != null ? testDir : Path.of("src/test/java");
         this.dryRun = dryRun;
     }
 
+    /**
+     * The generated test methods meant to kill each mutation of the group, by name. A mutation with
+     * no tests is one the model did not address.
+     */
+    public Map<MutationResult, List<String>> tests() {
+        return tests;
+    }
+
+    public List<String> testsFor(MutationResult mutation) {
+        return tests.getOrDefault(mutation, List.of());
+    }
+
+    private static Map<MutationResult, List<String>> attribute(MutantGroup group, String code) {
+        Map<MutationResult, List<String>> tests = new LinkedHashMap<>();
+        for (MutantAnalysis member : group.members()) {
+            tests.put(member.mutation(), new ArrayList<>());
+        }
+        List<MethodDeclaration> methods;
+        try {
+            methods = JavaParserPool.shared().parse("class Temp {\n" + code + "\n}").findAll(MethodDeclaration.class);
+        } catch (Exception e) {
+            methods = List.of();
+        }
+        for (MethodDeclaration method : methods) {
+            List<Integer> killed = new ArrayList<>();
+            String comment = method.getComment().map(Comment::getContent).orElse("");
+            if (group.size() > 1 && comment.contains("Kills:")) {
+                Matcher label = LABEL.matcher(comment.substring(comment.indexOf("Kills:")));
+                while (label.find()) {
+                    int member = Integer.parseInt(label.group(1)) - 1;
+                    if (member >= 0 && member < group.size()) {
+                        killed.add(member);
+                    }
+                }
+            }
+            for (int member = 0; member < group.size(); member++) {
+                if (killed.isEmpty() || killed.contains(member)) {
+                    tests.get(group.members().get(member).mutation()).add(method.getNameAsString());
+                }
+            }
+        }
+        tests.replaceAll((mutation, names) -> List.copyOf(names));
+        return tests;
+    }
+
     /**
      * Returns a diff-like representation of the proposed change.
      */
@@ -32,7 +107,15 @@ public class TestImprovement {
         StringBuilder diff = new StringBuilder();
         diff.append("=== Proposed Test Improvement ===\n");
         diff.append("Target: ").append(analysis.testFile() != null ? analysis.testFile() : "NEW TEST FILE").append("\n");
-        diff.append("For mutation: ").append(analysis.mutation().humanReadable()).append("\n");
+        if (group.size() == 1) {
+            diff.append("For mutation: ").append(analysis.mutation().humanReadable()).append("\n");
+        } else {
+            diff.append("For mutations:\n");
+            for (Map.Entry<MutationResult, List<String>> entry : tests.entrySet()) {
+                diff.append("  ").append(entry.getKey().humanReadable()).append(" - ")
+                    .append(entry.getValue().isEmpty() ? "no test" : String.join(", ", entry.getValue())).append("\n");
+            }
+        }
         diff.append("\n+++ New/Modified Code +++\n");
         diff.append(generatedCode);
         diff.append("\n");
@@ -40,7 +123,8 @@ public class TestImprovement {
     }
 
     /**
-     * Apply the improvement to the test file.
+     * Apply the improvement to the test file. The file is read again rather than taken from the
+     * analysis, so improvements applied to the same test class one after another all keep their tests.
      */
     public void apply() throws IOException {
         if (dryRun) {
@@ -49,25 +133,24 @@ public class TestImprovement {
         }
 
         if (analysis.hasExistingTest()) {
-            applyToExistingTest();
+            applyToExistingTest(analysis.testFile());
         } else {
             createNewTestFile();
         }
     }
 
-    private void applyToExistingTest() throws IOException {
-        Path testFile = analysis.testFile();
-        String existingCode = analysis.existingTestCode();
+    private void applyToExistingTest(Path testFile) throws IOException {
+        String existingCode = Files.readString(testFile);
 
         // Parse existing test
-        CompilationUnit cu = StaticJavaParser.parse(existingCode);
+        CompilationUnit cu = JavaParserPool.shared().parse(existingCode);
         
         // Parse the generated method(s)
         // Wrap in a class if necessary for parsing
         String wrappedCode = "class Temp { " + generatedCode + " }";
         CompilationUnit generated;
         try {
-            generated = StaticJavaParser.parse(wrappedCode);
+            generated = JavaParserPool.shared().parse(wrappedCode);
         } catch (Exception e) {
             // If parsing fails, try to add the code as-is
             String updatedCode = appendToTestClass(existingCode, generatedCode);
@@ -112,12 +195,29 @@ public class TestImprovement {
     }
 
     private void createNewTestFile() throws IOException {
+        // Tests of nested classes go with their top-level class
         String className = analysis.mutation().mutatedClass();
-        String simpleClassName = className.substring(className.lastIndexOf('.') + 1);
-        String packageName = className.substring(0, className.lastIndexOf('.'));
+        int nested = className.indexOf('$');
+        if (nested >= 0) {
+            className = className.substring(0, nested);
+        }
+        int lastDot = className.lastIndexOf('.');
+        String simpleClassName = className.substring(lastDot + 1);
+        String packageName = lastDot >= 0 ? className.substring(0, lastDot) : "";
+
+        // The package's directory under the test root (PIT's sourceFile is just a file name)
+        Path packageDir = packageName.isEmpty() ? testDir : testDir.resolve(packageName.replace('.', '/'));
+        Path testFile = packageDir.resolve(simpleClassName + "Test.java");
+        if (Files.exists(testFile)) {
+            // Created by an earlier improvement in this run
+            applyToExistingTest(testFile);
+            return;
+        }
         
         StringBuilder testClass = new StringBuilder();
-        testClass.append("package ").append(packageName).append(";\n\n");
+        if (!packageName.isEmpty()) {
+            testClass.append("package ").append(packageName).append(";\n\n");
+        }
         testClass.append("import org.junit.jupiter.api.Test;\n");
         testClass.append("import static org.junit.jupiter.api.Assertions.*;\n\n");
         testClass.append("/**\n * Tests generated by mutant-killer to improve mutation coverage.\n */\n");
@@ -125,14 +225,7 @@ public class TestImprovement {
         testClass.append(indentCode(generatedCode, 4));
         testClass.append("\n}\n");
 
-        // Determine path
-        String packagePath = packageName.replace('.', '/');
-        Path testDir = analysis.mutation().sourceFile() != null 
-            ? Path.of(analysis.mutation().sourceFile()).getParent()
-            : Path.of("src/test/java").resolve(packagePath);
-        
-        Files.createDirectories(testDir);
-        Path testFile = testDir.resolve(simpleClassName + "Test.java");
+        Files.createDirectories(packageDir);
         Files.writeString(testFile, testClass.toString());
         
         System.out.println("Created new test file: " + testFile);
@@ -149,4 +242,8 @@ public class TestImprovement {
     public String generatedCode() {
         return generatedCode;
     }
+
+    public MutantGroup group() {
+        return group;
+    }
 }
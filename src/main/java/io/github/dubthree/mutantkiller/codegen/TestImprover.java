@@ -1,13 +1,18 @@
 package io.github.dubthree.mutantkiller.codegen;
 
-import com.anthropic.client.AnthropicClient;
-import com.anthropic.client.okhttp.AnthropicOkHttpClient;
+import com.anthropic.core.http.Headers;
+import com.anthropic.core.http.StreamResponse;
 import com.anthropic.models.messages.*;
-import io.github.dubthree.mutantkiller.analysis.MutantAnalysis;
+import com.anthropic.models.messages.batches.MessageBatch;
+import com.anthropic.models.messages.batches.MessageBatchIndividualResponse;
+import io.github.dubthree.mutantkiller.analysis.MutantGroup;
 import io.github.dubthree.mutantkiller.config.MutantKillerConfig;
-import io.github.dubthree.mutantkiller.pit.MutationResult;
+import io.github.dubthree.mutantkiller.config.PromptTemplate;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -37,95 +42,222 @@ public class TestImprover {
         If improving an existing test, show the complete improved method.
         """;
 
+    private static final int MAX_TOKENS = 2048;
+
+    private static final Pattern JAVA_BLOCK = Pattern.compile("```java\\s*\\n(.*?)\\n```", Pattern.DOTALL);
+    private static final Pattern PLAIN_BLOCK = Pattern.compile("```\\s*\\n(.*?)\\n```", Pattern.DOTALL);
+
+    /** Cacheable parts of the user prompt; the API allows four cache breakpoints, one is the system prompt's. */
+    private static final int MAX_CACHED_PARTS = 3;
+
+    /**
+     * Hints that steer speculative candidates towards different tests; the first candidate has none.
+     */
+    private static final String[] VARIANT_HINTS = {
+        "",
+        "Keep the test minimal: call the mutated method directly with inputs for which the original and "
+            + "the mutated code give different results, and assert the exact result.\n",
+        "Work out which inputs reach the mutated line, then test the values on both sides of the "
+            + "changed condition or operation.\n",
+        "If the mutated code has side effects (fields, collaborators, exceptions), assert on those "
+            + "rather than only on the return value.\n",
+    };
+
+    /** Sampling temperatures of speculative candidates after the first, which uses the API default. */
+    private static final double[] VARIANT_TEMPERATURES = {0.3, 0.7, 1.0};
+
     private final MutantKillerConfig config;
-    private final AnthropicClient client;
+    private final LlmClient client;
     private final String systemPrompt;
+    private final PromptTemplate template;
+    private final ThreadLocal<StringBuilder> promptBuffer = ThreadLocal.withInitial(() -> new StringBuilder(8192));
+    private final ResponseCache responseCache;
 
     public TestImprover(MutantKillerConfig config) {
+        this(config, LlmClient.create(config));
+    }
+
+    TestImprover(MutantKillerConfig config, LlmClient client) {
         this.config = config;
-        this.client = AnthropicOkHttpClient.builder()
-            .apiKey(config.apiKey())
-            .build();
+        this.client = client;
         
         // Load custom system prompt or use default
         String customPrompt = config.loadPrompt("system");
         this.systemPrompt = customPrompt != null ? customPrompt : DEFAULT_SYSTEM_PROMPT;
+        this.template = config.template("analyze");
+        if (template == null) {
+            throw new IllegalStateException("Prompt template not found: analyze.md");
+        }
+        if (template.parts() > MAX_CACHED_PARTS + 1) {
+            throw new IllegalArgumentException("analyze.md may have at most " + MAX_CACHED_PARTS + " {{---}} separators");
+        }
+
+        // Keys do not name the endpoint, so responses from another server or from recordings must not
+        // be mixed with the API's: they would be served to later runs, and would hide the server's own
+        this.responseCache = config.cacheDir() != null && !config.responseCacheTtl().isZero()
+                && config.baseUrl() == null && config.replayDir() == null
+            ? new ResponseCache(config.cacheDir().resolve("responses"), config.responseCacheTtl())
+            : null;
     }
 
     /**
-     * Generate a test improvement to kill the given mutation.
+     * The cache of earlier responses, or null if responses are not cached.
      */
-    public Optional<TestImprovement> improve(MutationResult mutation, MutantAnalysis analysis) {
-        String prompt = buildPrompt(analysis);
-        
-        if (config.verbose()) {
-            System.out.println("Sending prompt to Claude...");
-        }
+    public ResponseCache responseCache() {
+        return responseCache;
+    }
+
+    /**
+     * A request ready to send, with its response cache key and a rough estimate of its input
+     * tokens (four characters per token).
+     *
+     * @param sharedPrefix the cacheable text that other requests share with this one
+     */
+    record Request(MessageCreateParams params, String cacheKey, String sharedPrefix, long estimatedInputTokens) {
+    }
 
-        try {
-            MessageCreateParams params = MessageCreateParams.builder()
-                .model(config.model())
-                .maxTokens(2048)
-                .system(systemPrompt)
-                .messages(List.of(
-                    MessageParam.builder()
-                        .role(MessageParam.Role.USER)
-                        .content(prompt)
-                        .build()
-                ))
-                .build();
-
-            Message response = client.messages().create(params);
-            
-            String content = response.content().stream()
-                .filter(block -> block instanceof TextBlock)
-                .map(block -> ((TextBlock) block).text())
-                .findFirst()
-                .orElse("");
-
-            String generatedCode = extractCodeBlock(content);
-            
-            if (generatedCode == null || generatedCode.isBlank()) {
-                return Optional.empty();
+    /**
+     * Build the request for a group of mutations, rendered from the {@code analyze} template. The
+     * system prompt and each part of the template but the last (by default the test class and the
+     * mutated method) are marked as a cache breakpoint, so requests for other mutations in the same
+     * class or method read that prefix from the provider's prompt cache; only the mutations vary.
+     */
+    Request request(MutantGroup group) {
+        return request(group, 0);
+    }
+
+    /**
+     * Build the request for one of several speculative candidates. Candidate 0 is the plain request;
+     * the others vary the sampling temperature and add a hint on how to approach the test, so that
+     * they explore different tests. The hint comes last, after the cacheable prefix.
+     */
+    Request request(MutantGroup group, int candidate) {
+        Map<String, Object> values = group.promptValues();
+        String hint = VARIANT_HINTS[candidate % VARIANT_HINTS.length];
+        Double temperature = candidate == 0
+            ? null
+            : VARIANT_TEMPERATURES[(candidate - 1) % VARIANT_TEMPERATURES.length];
+
+        // The whole prompt is rendered into one buffer, sized up front, and the parts cut from it
+        StringBuilder buffer = promptBuffer.get();
+        buffer.setLength(0);
+        buffer.ensureCapacity(template.estimateSize(values) + hint.length());
+        int[] breaks = template.render(values, buffer);
+        buffer.append(hint);
+
+        List<ContentBlockParam> content = new ArrayList<>(breaks.length + 1);
+        int start = 0;
+        for (int end : breaks) {
+            if (end > start) {
+                content.add(ContentBlockParam.ofText(cached(buffer.substring(start, end))));
             }
+            start = end;
+        }
+        content.add(ContentBlockParam.ofText(TextBlockParam.builder().text(buffer.substring(start)).build()));
+        String sharedPrefix = breaks.length > 0 ? buffer.substring(0, breaks[0]) : "";
 
-            return Optional.of(new TestImprovement(
-                analysis,
-                generatedCode,
-                config.dryRun()
+        MessageCreateParams.Builder params = MessageCreateParams.builder()
+            .model(config.model())
+            .maxTokens(MAX_TOKENS)
+            .systemOfTextBlockParams(List.of(cached(systemPrompt)))
+            .messages(List.of(
+                MessageParam.builder()
+                    .role(MessageParam.Role.USER)
+                    .contentOfBlockParams(content)
+                    .build()
             ));
+        if (temperature != null) {
+            params.temperature(temperature);
+        }
+        String prompt = buffer.toString();
+        return new Request(params.build(), ResponseCache.key(config.model(), systemPrompt, prompt, MAX_TOKENS, temperature),
+            sharedPrefix, (systemPrompt.length() + prompt.length()) / 4);
+    }
 
-        } catch (Exception e) {
-            System.err.println("Error calling Claude API: " + e.getMessage());
-            if (config.verbose()) {
-                e.printStackTrace();
-            }
-            return Optional.empty();
+    private static TextBlockParam cached(String text) {
+        return TextBlockParam.builder()
+            .text(text)
+            .cacheControl(CacheControlEphemeral.builder().build())
+            .build();
+    }
+
+    /**
+     * A response with its token usage and the HTTP headers, from which rate limits are read.
+     *
+     * @param stoppedEarly whether a streamed response was closed before the model finished; its
+     *                     output tokens are then estimated from the text received
+     */
+    record Reply(String text, Headers headers, long inputTokens, long outputTokens,
+                 long cacheReadTokens, long cacheWriteTokens, boolean stoppedEarly) {
+    }
+
+    /**
+     * Send a request and wait for its response, streamed if so configured.
+     */
+    Reply send(Request request) {
+        return config.stream() ? client.stream(request) : client.send(request);
+    }
+
+    MessageBatch createBatch(Collection<Request> requests) {
+        return client.createBatch(requests);
+    }
+
+    MessageBatch retrieveBatch(String batchId) {
+        return client.retrieveBatch(batchId);
+    }
+
+    StreamResponse<MessageBatchIndividualResponse> batchResults(String batchId) {
+        return client.batchResults(batchId);
+    }
+
+    Optional<String> cachedResponse(Request request) {
+        return responseCache != null ? responseCache.get(request.cacheKey()) : Optional.empty();
+    }
+
+    static String text(Message response) {
+        return response.content().stream()
+            .flatMap(block -> block.text().stream())
+            .map(TextBlock::text)
+            .findFirst()
+            .orElse("");
+    }
+
+    /**
+     * The improvement in a response just received from the model. Only responses containing code
+     * are cached, so that a rerun asks again where the model produced nothing usable.
+     */
+    Optional<TestImprovement> received(MutantGroup group, Request request, String content) {
+        Optional<TestImprovement> improvement = toImprovement(group, content);
+        if (improvement.isPresent() && responseCache != null) {
+            responseCache.put(request.cacheKey(), content);
         }
+        return improvement;
     }
 
-    private String buildPrompt(MutantAnalysis analysis) {
-        StringBuilder prompt = new StringBuilder();
-        prompt.append(analysis.buildAnalysisPrompt());
-        prompt.append("## Task\n");
-        prompt.append("Write a test method that will FAIL when this mutation is applied, ");
-        prompt.append("but PASS on the original code. This will ensure the mutation is killed.\n\n");
-        prompt.append("The test should specifically target the behavior at line ");
-        prompt.append(analysis.mutation().lineNumber());
-        prompt.append(" that the mutation changes.\n");
-        return prompt.toString();
+    /**
+     * The improvement in a response, e.g. one from the response cache.
+     */
+    Optional<TestImprovement> toImprovement(MutantGroup group, String content) {
+        String generatedCode = extractCodeBlock(content);
+        if (generatedCode == null || generatedCode.isBlank()) {
+            return Optional.empty();
+        }
+        return Optional.of(new TestImprovement(
+            group,
+            generatedCode,
+            config.testDir(),
+            config.dryRun()
+        ));
     }
 
     private String extractCodeBlock(String content) {
         // Extract Java code from markdown code blocks
-        Pattern pattern = Pattern.compile("```java\\s*\\n(.*?)\\n```", Pattern.DOTALL);
-        Matcher matcher = pattern.matcher(content);
+        Matcher matcher = JAVA_BLOCK.matcher(content);
         if (matcher.find()) {
             return matcher.group(1).trim();
         }
         // Try without language specifier
-        pattern = Pattern.compile("```\\s*\\n(.*?)\\n```", Pattern.DOTALL);
-        matcher = pattern.matcher(content);
+        matcher = PLAIN_BLOCK.matcher(content);
         if (matcher.find()) {
             return matcher.group(1).trim();
         }
@@ -1,8 +1,15 @@
 package io.github.dubthree.mutantkiller.config;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Configuration for the mutant killer.
@@ -10,20 +17,91 @@ import java.nio.file.Path;
 public record MutantKillerConfig(
     String model,
     String apiKey,
+    String baseUrl,
     Path sourceDir,
     Path testDir,
+    List<Path> extraSourceDirs,
     Path promptDir,
+    Path cacheDir,
+    Duration responseCacheTtl,
+    Path recordDir,
+    Path replayDir,
+    int contextLines,
+    int sliceTokens,
+    int testTokens,
+    int maxInFlight,
+    int requestsPerMinute,
+    int tokensPerMinute,
+    boolean stream,
+    int fenceTokens,
+    int candidates,
     boolean dryRun,
     boolean verbose
 ) {
+    public static final int DEFAULT_CONTEXT_LINES = 5;
+
+    public static final int DEFAULT_SLICE_TOKENS = 1500;
+
+    public static final int DEFAULT_TEST_TOKENS = 4000;
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 8;
+
+    /**
+     * Default rate limits, those of the lowest API tier; the server's rate-limit headers raise them.
+     */
+    public static final int DEFAULT_REQUESTS_PER_MINUTE = 50;
+
+    public static final int DEFAULT_TOKENS_PER_MINUTE = 30_000;
+
+    public static final int DEFAULT_FENCE_TOKENS = 400;
+
+    public static final int MAX_CANDIDATES = 8;
+
+    /**
+     * Default location for persistent caches such as the source index.
+     */
+    public static final Path DEFAULT_CACHE_DIR = Path.of(System.getProperty("user.home"), ".mutant-killer", "cache");
+
+    public static final Duration DEFAULT_RESPONSE_CACHE_TTL = Duration.ofDays(7);
+
+    /** Prompts and compiled templates, keyed by prompt directory and name. */
+    private static final Map<List<String>, Optional<String>> PROMPTS = new ConcurrentHashMap<>();
+
+    private static final Map<List<String>, Optional<PromptTemplate>> TEMPLATES = new ConcurrentHashMap<>();
+
     public static Builder builder() {
         return new Builder();
     }
 
     /**
-     * Load a prompt template, checking custom promptDir first, then defaults.
+     * Load a prompt, checking custom promptDir first, then defaults. Prompts are read once per prompt directory.
      */
     public String loadPrompt(String name) {
+        return PROMPTS.computeIfAbsent(List.of(String.valueOf(promptDir), name),
+            key -> Optional.ofNullable(readPrompt(name))).orElse(null);
+    }
+
+    /**
+     * Load and compile a prompt template; null if there is no prompt of that name. Templates are
+     * compiled once per prompt directory.
+     *
+     * @throws IllegalArgumentException if the template is malformed
+     */
+    public PromptTemplate template(String name) {
+        return TEMPLATES.computeIfAbsent(List.of(String.valueOf(promptDir), name), key -> {
+            String source = loadPrompt(name);
+            if (source == null) {
+                return Optional.empty();
+            }
+            try {
+                return Optional.of(PromptTemplate.compile(source));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid prompt template " + name + ".md: " + e.getMessage(), e);
+            }
+        }).orElse(null);
+    }
+
+    private String readPrompt(String name) {
         // Try custom prompt directory first
         if (promptDir != null) {
             Path customPrompt = promptDir.resolve(name + ".md");
@@ -39,7 +117,7 @@ public record MutantKillerConfig(
         // Load from classpath
         try (var stream = getClass().getResourceAsStream("/prompts/" + name + ".md")) {
             if (stream != null) {
-                return new String(stream.readAllBytes());
+                return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
             }
         } catch (IOException e) {
             // Fall through to hardcoded default
@@ -51,9 +129,24 @@ public record MutantKillerConfig(
     public static class Builder {
         private String model = "claude-sonnet-4-20250514";
         private String apiKey;
+        private String baseUrl;
         private Path sourceDir;
         private Path testDir;
+        private final List<Path> extraSourceDirs = new ArrayList<>();
         private Path promptDir;
+        private Path cacheDir = DEFAULT_CACHE_DIR;
+        private Duration responseCacheTtl = DEFAULT_RESPONSE_CACHE_TTL;
+        private Path recordDir;
+        private Path replayDir;
+        private int contextLines = DEFAULT_CONTEXT_LINES;
+        private int sliceTokens = DEFAULT_SLICE_TOKENS;
+        private int testTokens = DEFAULT_TEST_TOKENS;
+        private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+        private int requestsPerMinute = DEFAULT_REQUESTS_PER_MINUTE;
+        private int tokensPerMinute = DEFAULT_TOKENS_PER_MINUTE;
+        private boolean stream = false;
+        private int fenceTokens = DEFAULT_FENCE_TOKENS;
+        private int candidates = 1;
         private boolean dryRun = false;
         private boolean verbose = false;
 
@@ -67,6 +160,14 @@ public record MutantKillerConfig(
             return this;
         }
 
+        /**
+         * API base URL, e.g. a local stand-in server; null for the default.
+         */
+        public Builder baseUrl(String baseUrl) {
+            this.baseUrl = baseUrl;
+            return this;
+        }
+
         public Builder sourceDir(Path sourceDir) {
             this.sourceDir = sourceDir;
             return this;
@@ -77,11 +178,153 @@ public record MutantKillerConfig(
             return this;
         }
 
+        /**
+         * Additional main source roots, e.g. generated sources.
+         */
+        public Builder extraSourceDirs(List<Path> extraSourceDirs) {
+            this.extraSourceDirs.addAll(extraSourceDirs);
+            return this;
+        }
+
+        public Builder extraSourceDir(Path extraSourceDir) {
+            this.extraSourceDirs.add(extraSourceDir);
+            return this;
+        }
+
+        /**
+         * Directory for persistent caches; null disables them.
+         */
+        public Builder cacheDir(Path cacheDir) {
+            this.cacheDir = cacheDir;
+            return this;
+        }
+
+        /**
+         * How long model responses are reused for identical prompts; zero disables the response cache.
+         */
+        public Builder responseCacheTtl(Duration responseCacheTtl) {
+            if (responseCacheTtl.isNegative()) {
+                throw new IllegalArgumentException("Response cache TTL must not be negative: " + responseCacheTtl);
+            }
+            this.responseCacheTtl = responseCacheTtl;
+            return this;
+        }
+
+        /**
+         * Directory where model responses are recorded, to be replayed later; null records nothing.
+         */
+        public Builder recordDir(Path recordDir) {
+            this.recordDir = recordDir;
+            return this;
+        }
+
+        /**
+         * Directory of recorded responses to answer from instead of the API; null asks the API.
+         */
+        public Builder replayDir(Path replayDir) {
+            this.replayDir = replayDir;
+            return this;
+        }
+
         public Builder promptDir(Path promptDir) {
             this.promptDir = promptDir;
             return this;
         }
 
+        /**
+         * Number of lines shown before and after the mutated line.
+         */
+        public Builder contextLines(int contextLines) {
+            if (contextLines < 0) {
+                throw new IllegalArgumentException("Context lines must not be negative: " + contextLines);
+            }
+            this.contextLines = contextLines;
+            return this;
+        }
+
+        /**
+         * Token budget for the declarations the mutated method depends on; 0 leaves them out.
+         */
+        public Builder sliceTokens(int sliceTokens) {
+            if (sliceTokens < 0) {
+                throw new IllegalArgumentException("Slice tokens must not be negative: " + sliceTokens);
+            }
+            this.sliceTokens = sliceTokens;
+            return this;
+        }
+
+        /**
+         * Token budget for the existing test class; larger classes are summarized, 0 sends them whole.
+         */
+        public Builder testTokens(int testTokens) {
+            if (testTokens < 0) {
+                throw new IllegalArgumentException("Test tokens must not be negative: " + testTokens);
+            }
+            this.testTokens = testTokens;
+            return this;
+        }
+
+        /**
+         * Maximum number of concurrent API requests.
+         */
+        public Builder maxInFlight(int maxInFlight) {
+            if (maxInFlight < 1) {
+                throw new IllegalArgumentException("Concurrency must be at least 1: " + maxInFlight);
+            }
+            this.maxInFlight = maxInFlight;
+            return this;
+        }
+
+        public Builder requestsPerMinute(int requestsPerMinute) {
+            if (requestsPerMinute < 1) {
+                throw new IllegalArgumentException("Requests per minute must be at least 1: " + requestsPerMinute);
+            }
+            this.requestsPerMinute = requestsPerMinute;
+            return this;
+        }
+
+        /**
+         * Input tokens per minute.
+         */
+        public Builder tokensPerMinute(int tokensPerMinute) {
+            if (tokensPerMinute < 1) {
+                throw new IllegalArgumentException("Tokens per minute must be at least 1: " + tokensPerMinute);
+            }
+            this.tokensPerMinute = tokensPerMinute;
+            return this;
+        }
+
+        /**
+         * Stream responses and stop reading once the first code block is complete.
+         */
+        public Builder stream(boolean stream) {
+            this.stream = stream;
+            return this;
+        }
+
+        /**
+         * Output tokens after which a streamed response without a code fence is abandoned; 0 never abandons it.
+         */
+        public Builder fenceTokens(int fenceTokens) {
+            if (fenceTokens < 0) {
+                throw new IllegalArgumentException("Fence tokens must not be negative: " + fenceTokens);
+            }
+            this.fenceTokens = fenceTokens;
+            return this;
+        }
+
+        /**
+         * Number of diverse candidates generated at once for each mutation; the first that passes
+         * verification is taken. 1 generates a single one.
+         */
+        public Builder candidates(int candidates) {
+            if (candidates < 1 || candidates > MAX_CANDIDATES) {
+                throw new IllegalArgumentException("Candidates must be between 1 and " + MAX_CANDIDATES + ": " + candidates);
+            }
+            this.candidates = candidates;
+            return this;
+        }
+
         public Builder dryRun(boolean dryRun) {
             this.dryRun = dryRun;
             return this;
@@ -100,7 +343,12 @@ public record MutantKillerConfig(
                 throw new IllegalStateException(
                     "Anthropic API key not set. Set ANTHROPIC_API_KEY environment variable.");
             }
-            return new MutantKillerConfig(model, apiKey, sourceDir, testDir, promptDir, dryRun, verbose);
+            if (recordDir != null && replayDir != null) {
+                throw new IllegalStateException("Responses cannot be recorded and replayed at once");
+            }
+            return new MutantKillerConfig(model, apiKey, baseUrl, sourceDir, testDir, List.copyOf(extraSourceDirs),
+                promptDir, cacheDir, responseCacheTtl, recordDir, replayDir, contextLines, sliceTokens, testTokens,
+                maxInFlight, requestsPerMinute, tokensPerMinute, stream, fenceTokens, candidates, dryRun, verbose);
         }
     }
 }
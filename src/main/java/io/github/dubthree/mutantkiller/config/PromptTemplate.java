@@ -0,0 +1,289 @@
+package io.github.dubthree.mutantkiller.config;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A prompt template, parsed once into segments and rendered for each mutation.
+ *
+ * <p>The syntax is a small subset of Mustache:
+ * <ul>
+ *   <li>{@code {{name}}} is replaced by the value of {@code name}, or nothing if it has none;</li>
+ *   <li>{@code {{#if name}}...{{else}}...{{/if}}} renders the first part if {@code name} is set
+ *       (not null, false, blank or empty), otherwise the optional second part;</li>
+ *   <li>{@code {{#each name}}...{{/each}}} renders its body once for each element of the collection
+ *       {@code name}; the keys of an element that is a map are visible in the body;</li>
+ *   <li>{@code {{! comment}}} renders nothing;</li>
+ *   <li>{@code {{---}}} splits the prompt into parts that are sent as separate blocks, each of which
+ *       can be cached by the API. It is only allowed outside of {@code if} and {@code each}.</li>
+ * </ul>
+ * A line holding nothing but a tag other than {@code {{name}}} is left out entirely, so block
+ * tags can go on lines of their own without adding blank lines to the prompt.
+ */
+public final class PromptTemplate {
+
+    private sealed interface Segment permits Text, Variable, Conditional, Section, Break {
+    }
+
+    private record Text(String text) implements Segment {
+    }
+
+    private record Variable(String name) implements Segment {
+    }
+
+    private record Conditional(String name, List<Segment> then, List<Segment> otherwise) implements Segment {
+    }
+
+    private record Section(String name, List<Segment> body) implements Segment {
+    }
+
+    private record Break() implements Segment {
+    }
+
+    /** Values visible while rendering, innermost first. */
+    private record Scope(Map<String, ?> values, Scope parent) {
+        Object get(String name) {
+            for (Scope scope = this; scope != null; scope = scope.parent) {
+                if (scope.values.containsKey(name)) {
+                    return scope.values.get(name);
+                }
+            }
+            return null;
+        }
+    }
+
+    /** A block being parsed: its tag, and the list that segments are added to. */
+    private static final class Frame {
+        final String tag;
+        final String name;
+        final List<Segment> then = new ArrayList<>();
+        List<Segment> otherwise;
+        List<Segment> target = then;
+
+        Frame(String tag, String name) {
+            this.tag = tag;
+            this.name = name;
+        }
+    }
+
+    private final List<Segment> segments;
+    private final int parts;
+
+    private PromptTemplate(List<Segment> segments, int parts) {
+        this.segments = segments;
+        this.parts = parts;
+    }
+
+    /**
+     * Parse a template.
+     *
+     * @throws IllegalArgumentException if the template is malformed
+     */
+    public static PromptTemplate compile(String source) {
+        List<Segment> root = new ArrayList<>();
+        Deque<Frame> frames = new ArrayDeque<>();
+        int parts = 1;
+        int pos = 0;
+        while (pos < source.length()) {
+            int open = source.indexOf("{{", pos);
+            if (open < 0) {
+                add(frames, root, source.substring(pos));
+                break;
+            }
+            int close = source.indexOf("}}", open + 2);
+            if (close < 0) {
+                throw error(source, open, "Unclosed tag");
+            }
+            String tag = source.substring(open + 2, close).strip();
+            int end = close + 2;
+
+            if (isName(tag) && !tag.equals("else")) {
+                add(frames, root, source.substring(pos, open));
+                (frames.isEmpty() ? root : frames.peek().target).add(new Variable(tag));
+                pos = end;
+                continue;
+            }
+
+            // Block tags on a line of their own take the whole line with them
+            int lineStart = source.lastIndexOf('\n', open - 1) + 1;
+            int lineEnd = source.indexOf('\n', end);
+            if (lineEnd < 0) {
+                lineEnd = source.length();
+            }
+            boolean standalone = lineStart >= pos
+                && source.substring(lineStart, open).isBlank()
+                && source.substring(end, lineEnd).isBlank();
+            add(frames, root, source.substring(pos, standalone ? lineStart : open));
+            pos = standalone ? Math.min(source.length(), lineEnd + 1) : end;
+
+            if (tag.startsWith("!")) {
+                continue;
+            }
+            if (tag.equals("---")) {
+                if (!frames.isEmpty()) {
+                    throw error(source, open, "{{---}} inside {{#" + frames.peek().tag + "}}");
+                }
+                root.add(new Break());
+                parts++;
+            } else if (tag.startsWith("#if ") || tag.startsWith("#each ")) {
+                String name = tag.substring(tag.indexOf(' ') + 1).strip();
+                if (!isName(name)) {
+                    throw error(source, open, "Invalid name in {{" + tag + "}}");
+                }
+                frames.push(new Frame(tag.substring(1, tag.indexOf(' ')), name));
+            } else if (tag.equals("else")) {
+                Frame frame = frames.peek();
+                if (frame == null || !frame.tag.equals("if") || frame.otherwise != null) {
+                    throw error(source, open, "{{else}} outside of {{#if}}");
+                }
+                frame.otherwise = new ArrayList<>();
+                frame.target = frame.otherwise;
+            } else if (tag.equals("/if") || tag.equals("/each")) {
+                Frame frame = frames.poll();
+                if (frame == null || !frame.tag.equals(tag.substring(1))) {
+                    throw error(source, open, "{{" + tag + "}} without a matching {{#" + tag.substring(1) + "}}");
+                }
+                Segment block = frame.tag.equals("if")
+                    ? new Conditional(frame.name, List.copyOf(frame.then),
+                        frame.otherwise != null ? List.copyOf(frame.otherwise) : List.of())
+                    : new Section(frame.name, List.copyOf(frame.then));
+                (frames.isEmpty() ? root : frames.peek().target).add(block);
+            } else {
+                throw error(source, open, "Unknown tag {{" + tag + "}}");
+            }
+        }
+        if (!frames.isEmpty()) {
+            throw new IllegalArgumentException("Unclosed {{#" + frames.peek().tag + " " + frames.peek().name + "}}");
+        }
+        return new PromptTemplate(List.copyOf(root), parts);
+    }
+
+    private static void add(Deque<Frame> frames, List<Segment> root, String text) {
+        if (!text.isEmpty()) {
+            (frames.isEmpty() ? root : frames.peek().target).add(new Text(text));
+        }
+    }
+
+    private static boolean isName(String tag) {
+        if (tag.isEmpty() || !Character.isJavaIdentifierStart(tag.charAt(0))) {
+            return false;
+        }
+        return tag.chars().allMatch(Character::isJavaIdentifierPart);
+    }
+
+    private static IllegalArgumentException error(String source, int offset, String message) {
+        int line = (int) source.substring(0, offset).chars().filter(c -> c == '\n').count() + 1;
+        return new IllegalArgumentException("Line " + line + ": " + message);
+    }
+
+    /**
+     * Number of parts the template renders, one more than its {@code {{---}}} separators.
+     */
+    public int parts() {
+        return parts;
+    }
+
+    /**
+     * The length of the rendered text, to size the buffer before rendering.
+     */
+    public int estimateSize(Map<String, ?> values) {
+        return estimate(segments, new Scope(values, null));
+    }
+
+    private static int estimate(List<Segment> segments, Scope scope) {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += switch (segment) {
+                case Text text -> text.text().length();
+                case Variable variable -> {
+                    Object value = scope.get(variable.name());
+                    yield value instanceof CharSequence chars ? chars.length() : value != null ? 16 : 0;
+                }
+                case Conditional conditional -> estimate(
+                    isSet(scope.get(conditional.name())) ? conditional.then() : conditional.otherwise(), scope);
+                case Section section -> {
+                    int body = 0;
+                    for (Object element : elements(scope.get(section.name()))) {
+                        body += estimate(section.body(), scope(element, scope));
+                    }
+                    yield body;
+                }
+                case Break ignored -> 0;
+            };
+        }
+        return size;
+    }
+
+    /**
+     * Append the rendered template.
+     *
+     * @return the offsets in {@code out} at which the second and later parts start
+     */
+    public int[] render(Map<String, ?> values, StringBuilder out) {
+        int[] breaks = new int[parts - 1];
+        render(segments, new Scope(values, null), out, breaks, 0);
+        return breaks;
+    }
+
+    /**
+     * Render the template as one string, ignoring part separators.
+     */
+    public String render(Map<String, ?> values) {
+        StringBuilder out = new StringBuilder(estimateSize(values));
+        render(values, out);
+        return out.toString();
+    }
+
+    private static int render(List<Segment> segments, Scope scope, StringBuilder out, int[] breaks, int part) {
+        for (Segment segment : segments) {
+            switch (segment) {
+                case Text text -> out.append(text.text());
+                case Variable variable -> {
+                    Object value = scope.get(variable.name());
+                    if (value instanceof CharSequence chars) {
+                        out.append(chars);
+                    } else if (value != null) {
+                        out.append(value);
+                    }
+                }
+                case Conditional conditional -> render(
+                    isSet(scope.get(conditional.name())) ? conditional.then() : conditional.otherwise(),
+                    scope, out, breaks, part);
+                case Section section -> {
+                    for (Object element : elements(scope.get(section.name()))) {
+                        render(section.body(), scope(element, scope), out, breaks, part);
+                    }
+                }
+                case Break ignored -> breaks[part++] = out.length();
+            }
+        }
+        return part;
+    }
+
+    private static boolean isSet(Object value) {
+        return switch (value) {
+            case null -> false;
+            case Boolean bool -> bool;
+            case CharSequence chars -> !chars.toString().isBlank();
+            case Collection<?> collection -> !collection.isEmpty();
+            default -> true;
+        };
+    }
+
+    private static Collection<?> elements(Object value) {
+        return value instanceof Collection<?> collection ? collection : isSet(value) ? List.of(value) : List.of();
+    }
+
+    private static Scope scope(Object element, Scope parent) {
+        return element instanceof Map<?, ?> map ? new Scope(castKeys(map), parent) : parent;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, ?> castKeys(Map<?, ?> map) {
+        return (Map<String, ?>) map;
+    }
+}
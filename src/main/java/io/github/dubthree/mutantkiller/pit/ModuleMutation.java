@@ -0,0 +1,10 @@
+package io.github.dubthree.mutantkiller.pit;
+
+/**
+ * A mutation attributed to the module whose report it came from.
+ */
+public record ModuleMutation(
+    ModuleReport module,
+    MutationResult mutation
+) {
+}
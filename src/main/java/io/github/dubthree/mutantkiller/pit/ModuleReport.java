@@ -0,0 +1,20 @@
+package io.github.dubthree.mutantkiller.pit;
+
+import java.io.File;
+import java.nio.file.Path;
+
+/**
+ * A PIT report produced for one module of a (possibly multi-module) build.
+ *
+ * @param module     module path relative to the project root ("." for the root module)
+ * @param moduleDir  the module's base directory
+ * @param reportFile the module's mutations.xml
+ * @param aggregate  true if the report aggregates the mutations of several modules
+ */
+public record ModuleReport(
+    String module,
+    Path moduleDir,
+    File reportFile,
+    boolean aggregate
+) {
+}
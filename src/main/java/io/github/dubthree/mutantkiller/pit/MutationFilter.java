@@ -0,0 +1,171 @@
+package io.github.dubthree.mutantkiller.pit;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Criteria pushed down into {@link PitReportParser} so that non-matching mutations
+ * are skipped while reading, and parsing stops once {@link #limit()} matches are found.
+ */
+public final class MutationFilter {
+
+    /**
+     * Statuses that count as surviving (see {@link MutationResult#survived()}).
+     */
+    public static final Set<String> SURVIVING = Set.of("SURVIVED", "NO_COVERAGE");
+
+    private static final MutationFilter ALL = builder().build();
+
+    private final Set<String> statuses;
+    private final List<Pattern> classPatterns;
+    private final Set<String> mutators;
+    private final int fromLine;
+    private final int toLine;
+    private final long limit;
+
+    private MutationFilter(Builder builder) {
+        this.statuses = Set.copyOf(builder.statuses);
+        this.classPatterns = builder.classGlobs.stream().map(MutationFilter::globToPattern).toList();
+        this.mutators = Set.copyOf(builder.mutators);
+        this.fromLine = builder.fromLine;
+        this.toLine = builder.toLine;
+        this.limit = builder.limit;
+    }
+
+    /**
+     * A filter that accepts every mutation.
+     */
+    public static MutationFilter all() {
+        return ALL;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns true if the mutation matches every criterion of this filter.
+     */
+    public boolean test(MutationResult mutation) {
+        return acceptsStatus(mutation.status())
+            && acceptsClass(mutation.mutatedClass())
+            && acceptsLine(mutation.lineNumber())
+            && acceptsMutator(mutation.mutator());
+    }
+
+    public boolean acceptsStatus(String status) {
+        return statuses.isEmpty() || statuses.contains(status);
+    }
+
+    public boolean acceptsClass(String className) {
+        if (classPatterns.isEmpty()) {
+            return true;
+        }
+        if (className == null) {
+            return false;
+        }
+        for (Pattern pattern : classPatterns) {
+            if (pattern.matcher(className).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Mutators match on their fully qualified name or their simple name (e.g. {@code MathMutator}).
+     */
+    public boolean acceptsMutator(String mutator) {
+        if (mutators.isEmpty()) {
+            return true;
+        }
+        if (mutator == null) {
+            return false;
+        }
+        return mutators.contains(mutator)
+            || mutators.contains(mutator.substring(mutator.lastIndexOf('.') + 1));
+    }
+
+    public boolean acceptsLine(int lineNumber) {
+        return lineNumber >= fromLine && lineNumber <= toLine;
+    }
+
+    /**
+     * Maximum number of matching mutations to read before parsing stops.
+     */
+    public long limit() {
+        return limit;
+    }
+
+    /**
+     * Converts a PIT-style class glob ({@code com.example.*}, {@code *Service}) to a regex.
+     * {@code *} matches any sequence of characters and {@code ?} a single character.
+     */
+    private static Pattern globToPattern(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (char c : glob.toCharArray()) {
+            switch (c) {
+                case '*' -> regex.append(".*");
+                case '?' -> regex.append('.');
+                default -> regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+
+    public static class Builder {
+        private final Set<String> statuses = new LinkedHashSet<>();
+        private final List<String> classGlobs = new ArrayList<>();
+        private final Set<String> mutators = new LinkedHashSet<>();
+        private int fromLine = Integer.MIN_VALUE;
+        private int toLine = Integer.MAX_VALUE;
+        private long limit = Long.MAX_VALUE;
+
+        public Builder statuses(Collection<String> statuses) {
+            this.statuses.addAll(statuses);
+            return this;
+        }
+
+        /**
+         * Only accept mutations that survived or had no coverage.
+         */
+        public Builder survivedOnly() {
+            return statuses(SURVIVING);
+        }
+
+        public Builder classGlobs(Collection<String> classGlobs) {
+            this.classGlobs.addAll(classGlobs);
+            return this;
+        }
+
+        public Builder mutators(Collection<String> mutators) {
+            this.mutators.addAll(mutators);
+            return this;
+        }
+
+        public Builder lines(int fromLine, int toLine) {
+            this.fromLine = fromLine;
+            this.toLine = toLine;
+            return this;
+        }
+
+        public Builder limit(long limit) {
+            this.limit = limit;
+            return this;
+        }
+
+        public MutationFilter build() {
+            if (fromLine > toLine) {
+                throw new IllegalArgumentException("Invalid line range: " + fromLine + "-" + toLine);
+            }
+            if (limit < 0) {
+                throw new IllegalArgumentException("Limit must not be negative: " + limit);
+            }
+            return new MutationFilter(this);
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package io.github.dubthree.mutantkiller.pit;
+
+/**
+ * Identifies a mutant across report runs, independent of its status and test results.
+ */
+public record MutationKey(
+    String mutatedClass,
+    String mutatedMethod,
+    String methodDescription,
+    int lineNumber,
+    String mutator
+) {
+    public static MutationKey of(MutationResult mutation) {
+        return new MutationKey(
+            mutation.mutatedClass(),
+            mutation.mutatedMethod(),
+            mutation.methodDescription(),
+            mutation.lineNumber(),
+            mutation.mutator()
+        );
+    }
+
+    /**
+     * The same key without the line number, used to recognize mutants whose code moved.
+     */
+    public MutationKey anyLine() {
+        return lineNumber == 0 ? this : new MutationKey(mutatedClass, mutatedMethod, methodDescription, 0, mutator);
+    }
+}
@@ -0,0 +1,222 @@
+package io.github.dubthree.mutantkiller.pit;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Pull-parses {@code <mutation>} elements from a PIT report one at a time,
+ * moving on to the next document when the input holds several (e.g. an archive).
+ * Only the current element is held in memory. Elements rejected by the
+ * {@link MutationFilter} are skipped as soon as a field fails to match,
+ * and reading stops once the filter's limit is reached.
+ *
+ * <p>When an archive holds several documents, a mutant is returned only the first time it is
+ * read, by {@link MutationKey}; later duplicates do not count towards the limit. Only the keys
+ * of mutants returned are kept, and only for archives.
+ */
+final class MutationReader implements Iterator<MutationResult>, Closeable {
+
+    private final ReportInput input;
+    private final XMLInputFactory factory;
+    private final MutationFilter filter;
+    private final Set<MutationKey> seen;
+    private XMLStreamReader xml;
+    private long matched;
+    private MutationResult next;
+    private boolean finished;
+
+    MutationReader(ReportInput input, XMLInputFactory factory, MutationFilter filter) throws IOException {
+        this.input = input;
+        this.factory = factory;
+        this.filter = filter;
+        this.seen = input.archive() ? new HashSet<>() : null;
+        try {
+            this.xml = nextDocument();
+        } catch (IOException e) {
+            input.close();
+            throw e;
+        }
+        if (xml == null) {
+            input.close();
+            throw new IOException("No mutations.xml found in input");
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !finished) {
+            try {
+                next = readNext();
+            } catch (XMLStreamException e) {
+                throw new UncheckedIOException(new IOException("Malformed PIT report: " + e.getMessage(), e));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            finished = next == null;
+        }
+        return next != null;
+    }
+
+    @Override
+    public MutationResult next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        MutationResult result = next;
+        next = null;
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        try {
+            if (xml != null) {
+                xml.close();
+            }
+        } catch (XMLStreamException e) {
+            // Underlying stream is closed below regardless
+        } finally {
+            input.close();
+        }
+    }
+
+    private XMLStreamReader nextDocument() throws IOException {
+        InputStream document = input.next();
+        if (document == null) {
+            return null;
+        }
+        try {
+            return factory.createXMLStreamReader(document);
+        } catch (XMLStreamException e) {
+            throw new IOException("Could not open PIT report: " + e.getMessage(), e);
+        }
+    }
+
+    private MutationResult readNext() throws XMLStreamException, IOException {
+        if (matched >= filter.limit()) {
+            return null;
+        }
+        while (xml != null) {
+            while (xml.hasNext()) {
+                if (xml.next() == XMLStreamConstants.START_ELEMENT && "mutation".equals(xml.getLocalName())) {
+                    MutationResult mutation = readMutation();
+                    if (mutation != null && (seen == null || seen.add(MutationKey.of(mutation)))) {
+                        matched++;
+                        return mutation;
+                    }
+                }
+            }
+            xml.close();
+            xml = nextDocument();
+        }
+        return null;
+    }
+
+    /**
+     * Read the current mutation element, or skip it and return null if the filter rejects it.
+     */
+    private MutationResult readMutation() throws XMLStreamException {
+        String status = xml.getAttributeValue(null, "status");
+        if (!filter.acceptsStatus(status)) {
+            skipElement();
+            return null;
+        }
+        String sourceFile = null;
+        String mutatedClass = null;
+        String mutatedMethod = null;
+        String methodDescription = null;
+        int lineNumber = 0;
+        String mutator = null;
+        String description = null;
+        String killingTest = null;
+
+        while (xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                break;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            boolean accepted = true;
+            switch (xml.getLocalName()) {
+                case "sourceFile" -> sourceFile = xml.getElementText();
+                case "mutatedClass" -> {
+                    mutatedClass = xml.getElementText();
+                    accepted = filter.acceptsClass(mutatedClass);
+                }
+                case "mutatedMethod" -> mutatedMethod = xml.getElementText();
+                case "methodDescription" -> methodDescription = xml.getElementText();
+                case "lineNumber" -> {
+                    lineNumber = parseInt(xml.getElementText());
+                    accepted = filter.acceptsLine(lineNumber);
+                }
+                case "mutator" -> {
+                    mutator = xml.getElementText();
+                    accepted = filter.acceptsMutator(mutator);
+                }
+                case "description" -> description = xml.getElementText();
+                case "killingTest" -> killingTest = xml.getElementText();
+                default -> skipElement();
+            }
+            if (!accepted) {
+                // Rest of the element is irrelevant; skip to </mutation>
+                skipElement();
+                return null;
+            }
+        }
+
+        // Fields missing from the element still have to satisfy the filter
+        if (mutatedClass == null && !filter.acceptsClass(null)
+            || mutator == null && !filter.acceptsMutator(null)
+            || !filter.acceptsLine(lineNumber)) {
+            return null;
+        }
+
+        return new MutationResult(
+            mutatedClass,
+            mutatedMethod,
+            methodDescription,
+            lineNumber,
+            mutator,
+            description,
+            status,
+            sourceFile,
+            killingTest
+        );
+    }
+
+    /**
+     * Skip the current element and all of its children (e.g. {@code <indexes>}, {@code <blocks>}).
+     */
+    private void skipElement() throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static int parseInt(String text) {
+        try {
+            return Integer.parseInt(text.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package io.github.dubthree.mutantkiller.pit;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Binary cache of parsed PIT reports, stored next to the report as {@code <report>.mkcache}.
+ *
+ * <p>The cache is keyed by the report's size and SHA-256 hash. The report's modification time
+ * is recorded too: when size and mtime are unchanged the hash is not recomputed, so a warm
+ * open is a header check plus a memory-mapped bulk read of the columns.
+ */
+public class MutationReportCache {
+
+    static final String SUFFIX = ".mkcache";
+
+    private static final int MAGIC = 0x4D4B4331; // "MKC1"
+    private static final int VERSION = 1;
+    private static final int HASH_LENGTH = 32;
+    private static final int HEADER_LENGTH = 4 + 4 + 8 + 8 + HASH_LENGTH + 4;
+    private static final int MODIFIED_OFFSET = 4 + 4 + 8;
+
+    private final PitReportParser parser;
+
+    public MutationReportCache() {
+        this(new PitReportParser());
+    }
+
+    public MutationReportCache(PitReportParser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * Returns the cache file used for the given report.
+     */
+    public static Path cacheFile(File reportFile) {
+        return reportFile.toPath().resolveSibling(reportFile.getName() + SUFFIX);
+    }
+
+    /**
+     * Load the report from its cache if the cache is current, otherwise parse it
+     * and (re)write the cache.
+     */
+    public MutationTable open(File reportFile) throws IOException {
+        if (ReportInput.isStdin(reportFile)) {
+            // Nothing to key a cache on
+            return parser.parseTable(reportFile);
+        }
+        Path report = reportFile.toPath();
+        Path cache = cacheFile(reportFile);
+        long size = Files.size(report);
+        long modified = Files.getLastModifiedTime(report).toMillis();
+
+        if (Files.isRegularFile(cache)) {
+            MutationTable cached = read(cache, report, size, modified);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        // The report is hashed as it is parsed, so the cache never pairs a table with the hash of
+        // content written after it was read
+        MessageDigest digest = sha256();
+        MutationTable table;
+        try (InputStream in = new DigestInputStream(Files.newInputStream(report), digest)) {
+            table = parser.parseTable(in);
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        try {
+            write(cache, table, size, modified, digest.digest());
+        } catch (IOException e) {
+            // A read-only report directory just means no cache
+            System.err.println("Could not write report cache " + cache + ": " + e.getMessage());
+        }
+        return table;
+    }
+
+    private MutationTable read(Path cache, Path report, long size, long modified) throws IOException {
+        try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_LENGTH) {
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            long cachedSize = buffer.getLong();
+            long cachedModified = buffer.getLong();
+            byte[] cachedHash = new byte[HASH_LENGTH];
+            buffer.get(cachedHash);
+            if (cachedSize != size) {
+                return null;
+            }
+            if (cachedModified != modified && !Arrays.equals(cachedHash, hash(report))) {
+                return null;
+            }
+            MutationTable table = readTable(buffer);
+            if (cachedModified != modified) {
+                updateModified(cache, modified);
+            }
+            return table;
+        } catch (RuntimeException e) {
+            // Truncated or corrupt cache; fall back to parsing
+            return null;
+        }
+    }
+
+    /**
+     * Record the report's new mtime after its hash matched, e.g. after a checkout or copy that
+     * touched it, so later opens skip the hash again. A torn write only costs another hash.
+     */
+    private static void updateModified(Path cache, long modified) {
+        try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.WRITE)) {
+            writeFully(channel, ByteBuffer.allocate(Long.BYTES).putLong(modified).flip(), MODIFIED_OFFSET);
+        } catch (IOException e) {
+            // Read-only cache; the hash is checked again next time
+        }
+    }
+
+    private MutationTable readTable(ByteBuffer buffer) {
+        int rows = buffer.getInt();
+
+        StringDictionary[] dictionaries = new StringDictionary[8];
+        for (int i = 0; i < dictionaries.length; i++) {
+            StringDictionary dictionary = new StringDictionary();
+            int count = buffer.getInt();
+            for (int j = 0; j < count; j++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                dictionary.intern(new String(bytes, StandardCharsets.UTF_8));
+            }
+            dictionaries[i] = dictionary;
+        }
+
+        int[][] intColumns = new int[7][];
+        for (int i = 0; i < intColumns.length; i++) {
+            intColumns[i] = new int[rows];
+            buffer.asIntBuffer().get(intColumns[i]);
+            buffer.position(buffer.position() + rows * Integer.BYTES);
+        }
+
+        byte[][] byteColumns = new byte[2][];
+        for (int i = 0; i < byteColumns.length; i++) {
+            byteColumns[i] = new byte[rows];
+            buffer.get(byteColumns[i]);
+        }
+
+        return new MutationTable(rows, dictionaries, intColumns, byteColumns);
+    }
+
+    private void write(Path cache, MutationTable table, long size, long modified, byte[] hash) throws IOException {
+        Path temp = Files.createTempFile(cache.toAbsolutePath().getParent(), cache.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+                header.putInt(MAGIC).putInt(VERSION).putLong(size).putLong(modified).put(hash).putInt(table.size());
+                writeFully(channel, header.flip());
+
+                for (StringDictionary dictionary : table.dictionaries()) {
+                    byte[][] encoded = dictionary.values().stream()
+                        .map(value -> value.getBytes(StandardCharsets.UTF_8))
+                        .toArray(byte[][]::new);
+                    int length = Integer.BYTES + Arrays.stream(encoded).mapToInt(b -> Integer.BYTES + b.length).sum();
+                    ByteBuffer buffer = ByteBuffer.allocate(length).putInt(encoded.length);
+                    for (byte[] bytes : encoded) {
+                        buffer.putInt(bytes.length).put(bytes);
+                    }
+                    writeFully(channel, buffer.flip());
+                }
+
+                for (int[] column : table.intColumns()) {
+                    ByteBuffer buffer = ByteBuffer.allocate(column.length * Integer.BYTES);
+                    buffer.asIntBuffer().put(column);
+                    writeFully(channel, buffer);
+                }
+
+                for (byte[] column : table.byteColumns()) {
+                    writeFully(channel, ByteBuffer.wrap(column));
+                }
+            }
+            try {
+                Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, cache, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static byte[] hash(Path report) throws IOException {
+        MessageDigest digest = sha256();
+        try (FileChannel channel = FileChannel.open(report, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+            while (channel.read(buffer) >= 0) {
+                digest.update(buffer.flip());
+                buffer.clear();
+            }
+        }
+        return digest.digest();
+    }
+}
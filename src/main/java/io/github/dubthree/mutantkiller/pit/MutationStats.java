@@ -0,0 +1,207 @@
+package io.github.dubthree.mutantkiller.pit;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
+
+/**
+ * Survival statistics per package, class, method and mutator.
+ *
+ * <p>Computed in a single parallel fork-join pass over a {@link MutationTable}. Each partial
+ * result counts into arrays indexed by the table's dictionary ids, so the per-row work is a few
+ * array increments; names are only resolved once the partial results have been merged.
+ */
+public final class MutationStats {
+
+    /**
+     * Mutation counts for one package, class, method or mutator.
+     */
+    public record Tally(String name, long total, long survived) {
+        public double survivalRate() {
+            return total == 0 ? 0 : (double) survived / total;
+        }
+    }
+
+    private static final String UNKNOWN = "(unknown)";
+
+    private final long total;
+    private final long survived;
+    private final long killed;
+    private final List<Tally> byPackage;
+    private final List<Tally> byClass;
+    private final List<Tally> byMethod;
+    private final List<Tally> byMutator;
+
+    private MutationStats(MutationTable table, Accumulator counts) {
+        StringDictionary[] dictionaries = table.dictionaries();
+        StringDictionary classes = dictionaries[0];
+        StringDictionary methods = dictionaries[1];
+        StringDictionary mutators = dictionaries[6];
+
+        this.total = counts.total;
+        this.survived = counts.survived;
+        this.killed = counts.killed;
+
+        List<Tally> classTallies = new ArrayList<>();
+        Map<String, long[]> packages = new TreeMap<>();
+        for (int slot = 0; slot < counts.classTotals.length; slot++) {
+            if (counts.classTotals[slot] == 0) {
+                continue;
+            }
+            String className = slot == 0 ? UNKNOWN : classes.get(slot - 1);
+            classTallies.add(new Tally(className, counts.classTotals[slot], counts.classSurvived[slot]));
+            long[] pkg = packages.computeIfAbsent(packageName(className), name -> new long[2]);
+            pkg[0] += counts.classTotals[slot];
+            pkg[1] += counts.classSurvived[slot];
+        }
+        this.byClass = List.copyOf(classTallies);
+        this.byPackage = packages.entrySet().stream()
+            .map(entry -> new Tally(entry.getKey(), entry.getValue()[0], entry.getValue()[1]))
+            .toList();
+
+        this.byMethod = counts.methods.entrySet().stream()
+            .map(entry -> {
+                int classSlot = (int) (entry.getKey() >>> 32);
+                int methodId = (int) (long) entry.getKey() - 1;
+                String className = classSlot == 0 ? UNKNOWN : classes.get(classSlot - 1);
+                String methodName = methodId < 0 ? UNKNOWN : methods.get(methodId);
+                return new Tally(className + "." + methodName, entry.getValue()[0], entry.getValue()[1]);
+            })
+            .sorted(Comparator.comparing(Tally::name))
+            .toList();
+
+        List<Tally> mutatorTallies = new ArrayList<>();
+        for (int ordinal = 0; ordinal < counts.mutatorTotals.length; ordinal++) {
+            if (counts.mutatorTotals[ordinal] > 0) {
+                String mutator = mutators.get(ordinal);
+                mutatorTallies.add(new Tally(mutator.isEmpty() ? UNKNOWN : mutator,
+                    counts.mutatorTotals[ordinal], counts.mutatorSurvived[ordinal]));
+            }
+        }
+        this.byMutator = List.copyOf(mutatorTallies);
+    }
+
+    /**
+     * Compute all statistics in one parallel pass over the table.
+     */
+    public static MutationStats compute(MutationTable table) {
+        int classSlots = table.dictionaries()[0].size() + 1;
+        Accumulator counts = IntStream.range(0, table.size())
+            .parallel()
+            .collect(
+                () -> new Accumulator(classSlots),
+                (accumulator, row) -> accumulator.add(table, row),
+                Accumulator::merge);
+        return new MutationStats(table, counts);
+    }
+
+    public long total() {
+        return total;
+    }
+
+    public long survived() {
+        return survived;
+    }
+
+    public long killed() {
+        return killed;
+    }
+
+    public List<Tally> byPackage() {
+        return byPackage;
+    }
+
+    public List<Tally> byClass() {
+        return byClass;
+    }
+
+    public List<Tally> byMethod() {
+        return byMethod;
+    }
+
+    public List<Tally> byMutator() {
+        return byMutator;
+    }
+
+    /**
+     * The classes with the highest survival rate, ties broken by number of survivors.
+     */
+    public List<Tally> weakestClasses(int limit) {
+        return byClass.stream()
+            .filter(tally -> tally.survived() > 0)
+            .sorted(Comparator.comparingDouble(Tally::survivalRate).reversed()
+                .thenComparing(Comparator.comparingLong(Tally::survived).reversed()))
+            .limit(limit)
+            .toList();
+    }
+
+    private static String packageName(String className) {
+        int lastDot = className.lastIndexOf('.');
+        return lastDot >= 0 ? className.substring(0, lastDot) : "(default)";
+    }
+
+    /**
+     * Mutable partial result of the fork-join reduction. Class slot 0 holds rows without a class.
+     */
+    private static final class Accumulator {
+        long total;
+        long survived;
+        long killed;
+        final long[] classTotals;
+        final long[] classSurvived;
+        final long[] mutatorTotals = new long[256];
+        final long[] mutatorSurvived = new long[256];
+        /** Key: class slot in the high 32 bits, method id + 1 in the low 32 bits. */
+        final Map<Long, long[]> methods = new HashMap<>();
+
+        Accumulator(int classSlots) {
+            this.classTotals = new long[classSlots];
+            this.classSurvived = new long[classSlots];
+        }
+
+        void add(MutationTable table, int row) {
+            boolean rowSurvived = table.survived(row);
+            int survivedIncrement = rowSurvived ? 1 : 0;
+            int classSlot = table.classId(row) + 1;
+            int mutator = table.mutatorOrdinal(row);
+
+            total++;
+            survived += survivedIncrement;
+            if (table.killed(row)) {
+                killed++;
+            }
+            classTotals[classSlot]++;
+            classSurvived[classSlot] += survivedIncrement;
+            mutatorTotals[mutator]++;
+            mutatorSurvived[mutator] += survivedIncrement;
+
+            long methodKey = ((long) classSlot << 32) | (table.methodId(row) + 1);
+            long[] method = methods.computeIfAbsent(methodKey, key -> new long[2]);
+            method[0]++;
+            method[1] += survivedIncrement;
+        }
+
+        void merge(Accumulator other) {
+            total += other.total;
+            survived += other.survived;
+            killed += other.killed;
+            for (int i = 0; i < classTotals.length; i++) {
+                classTotals[i] += other.classTotals[i];
+                classSurvived[i] += other.classSurvived[i];
+            }
+            for (int i = 0; i < mutatorTotals.length; i++) {
+                mutatorTotals[i] += other.mutatorTotals[i];
+                mutatorSurvived[i] += other.mutatorSurvived[i];
+            }
+            other.methods.forEach((key, counts) -> {
+                long[] method = methods.computeIfAbsent(key, k -> new long[2]);
+                method[0] += counts[0];
+                method[1] += counts[1];
+            });
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package io.github.dubthree.mutantkiller.pit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Compact, column-oriented store of PIT mutation results.
+ *
+ * <p>String columns are dictionary-encoded: each distinct class, method, source file, etc.
+ * is stored once and rows hold integer ids. Status and mutator are byte ordinals and line
+ * numbers live in a primitive array. {@link #get(int)} returns a {@link MutationResult}
+ * view whose strings are the shared dictionary entries, so no per-row strings are retained.
+ */
+public final class MutationTable implements Iterable<MutationResult> {
+
+    /**
+     * Statuses with fixed ordinals so status checks are plain byte compares.
+     */
+    static final List<String> KNOWN_STATUSES = List.of(
+        "KILLED", "SURVIVED", "NO_COVERAGE", "TIMED_OUT", "MEMORY_ERROR",
+        "RUN_ERROR", "NON_VIABLE", "NOT_STARTED", "STARTED");
+
+    private static final byte KILLED = 0;
+    private static final byte SURVIVED = 1;
+    private static final byte NO_COVERAGE = 2;
+
+    private final int size;
+    private final StringDictionary classes;
+    private final StringDictionary methods;
+    private final StringDictionary descriptors;
+    private final StringDictionary sourceFiles;
+    private final StringDictionary descriptions;
+    private final StringDictionary killingTests;
+    private final StringDictionary mutators;
+    private final StringDictionary statuses;
+
+    private final int[] classIds;
+    private final int[] methodIds;
+    private final int[] descriptorIds;
+    private final int[] sourceFileIds;
+    private final int[] descriptionIds;
+    private final int[] killingTestIds;
+    private final int[] lineNumbers;
+    private final byte[] mutatorOrdinals;
+    private final byte[] statusOrdinals;
+
+    private MutationTable(Builder builder) {
+        this(builder.size,
+            new StringDictionary[] {
+                builder.classes, builder.methods, builder.descriptors, builder.sourceFiles,
+                builder.descriptions, builder.killingTests, builder.mutators, builder.statuses
+            },
+            new int[][] {
+                Arrays.copyOf(builder.classIds, builder.size),
+                Arrays.copyOf(builder.methodIds, builder.size),
+                Arrays.copyOf(builder.descriptorIds, builder.size),
+                Arrays.copyOf(builder.sourceFileIds, builder.size),
+                Arrays.copyOf(builder.descriptionIds, builder.size),
+                Arrays.copyOf(builder.killingTestIds, builder.size),
+                Arrays.copyOf(builder.lineNumbers, builder.size)
+            },
+            new byte[][] {
+                Arrays.copyOf(builder.mutatorOrdinals, builder.size),
+                Arrays.copyOf(builder.statusOrdinals, builder.size)
+            });
+    }
+
+    /**
+     * Reassemble a table from its columns, in the order returned by
+     * {@link #dictionaries()}, {@link #intColumns()} and {@link #byteColumns()}.
+     */
+    MutationTable(int size, StringDictionary[] dictionaries, int[][] intColumns, byte[][] byteColumns) {
+        this.size = size;
+        this.classes = dictionaries[0];
+        this.methods = dictionaries[1];
+        this.descriptors = dictionaries[2];
+        this.sourceFiles = dictionaries[3];
+        this.descriptions = dictionaries[4];
+        this.killingTests = dictionaries[5];
+        this.mutators = dictionaries[6];
+        this.statuses = dictionaries[7];
+        this.classIds = intColumns[0];
+        this.methodIds = intColumns[1];
+        this.descriptorIds = intColumns[2];
+        this.sourceFileIds = intColumns[3];
+        this.descriptionIds = intColumns[4];
+        this.killingTestIds = intColumns[5];
+        this.lineNumbers = intColumns[6];
+        this.mutatorOrdinals = byteColumns[0];
+        this.statusOrdinals = byteColumns[1];
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Build a table from already materialized results.
+     */
+    public static MutationTable of(Iterable<MutationResult> mutations) {
+        Builder builder = builder();
+        mutations.forEach(builder::add);
+        return builder.build();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns a view of the given row.
+     */
+    public MutationResult get(int row) {
+        return new MutationResult(
+            classes.get(classIds[row]),
+            methods.get(methodIds[row]),
+            descriptors.get(descriptorIds[row]),
+            lineNumbers[row],
+            mutator(row),
+            descriptions.get(descriptionIds[row]),
+            status(row),
+            sourceFiles.get(sourceFileIds[row]),
+            killingTests.get(killingTestIds[row])
+        );
+    }
+
+    public boolean survived(int row) {
+        byte status = statusOrdinals[row];
+        return status == SURVIVED || status == NO_COVERAGE;
+    }
+
+    public boolean killed(int row) {
+        return statusOrdinals[row] == KILLED;
+    }
+
+    public String mutatedClass(int row) {
+        return classes.get(classIds[row]);
+    }
+
+    public String mutatedMethod(int row) {
+        return methods.get(methodIds[row]);
+    }
+
+    public String mutator(int row) {
+        return ordinalValue(mutators, mutatorOrdinals[row]);
+    }
+
+    public String status(int row) {
+        return ordinalValue(statuses, statusOrdinals[row]);
+    }
+
+    public int lineNumber(int row) {
+        return lineNumbers[row];
+    }
+
+    public long countSurvived() {
+        long count = 0;
+        for (int row = 0; row < size; row++) {
+            if (survived(row)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public long countKilled() {
+        long count = 0;
+        for (int row = 0; row < size; row++) {
+            if (killed(row)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Stream row views in report order.
+     */
+    public Stream<MutationResult> stream() {
+        return IntStream.range(0, size).mapToObj(this::get);
+    }
+
+    /**
+     * Returns views of the rows accepted by the filter, up to its limit.
+     * Status, class, line and mutator are checked before a view is built.
+     */
+    public List<MutationResult> select(MutationFilter filter) {
+        List<MutationResult> selected = new ArrayList<>();
+        for (int row = 0; row < size && selected.size() < filter.limit(); row++) {
+            if (filter.acceptsStatus(status(row))
+                && filter.acceptsClass(mutatedClass(row))
+                && filter.acceptsLine(lineNumbers[row])
+                && filter.acceptsMutator(mutator(row))) {
+                selected.add(get(row));
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Stream views of surviving rows; the status check does not touch the dictionaries.
+     */
+    public Stream<MutationResult> survivors() {
+        return IntStream.range(0, size).filter(this::survived).mapToObj(this::get);
+    }
+
+    @Override
+    public Iterator<MutationResult> iterator() {
+        return stream().iterator();
+    }
+
+    int classId(int row) {
+        return classIds[row];
+    }
+
+    int methodId(int row) {
+        return methodIds[row];
+    }
+
+    int mutatorOrdinal(int row) {
+        return mutatorOrdinals[row] & 0xFF;
+    }
+
+    StringDictionary[] dictionaries() {
+        return new StringDictionary[] {
+            classes, methods, descriptors, sourceFiles, descriptions, killingTests, mutators, statuses
+        };
+    }
+
+    int[][] intColumns() {
+        return new int[][] {
+            classIds, methodIds, descriptorIds, sourceFileIds, descriptionIds, killingTestIds, lineNumbers
+        };
+    }
+
+    byte[][] byteColumns() {
+        return new byte[][] {mutatorOrdinals, statusOrdinals};
+    }
+
+    private static String ordinalValue(StringDictionary dictionary, byte ordinal) {
+        String value = dictionary.get(ordinal & 0xFF);
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Accumulates rows, interning string columns as they are added.
+     */
+    public static class Builder {
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private int size;
+        private final StringDictionary classes = new StringDictionary();
+        private final StringDictionary methods = new StringDictionary();
+        private final StringDictionary descriptors = new StringDictionary();
+        private final StringDictionary sourceFiles = new StringDictionary();
+        private final StringDictionary descriptions = new StringDictionary();
+        private final StringDictionary killingTests = new StringDictionary();
+        private final StringDictionary mutators = new StringDictionary();
+        private final StringDictionary statuses = new StringDictionary();
+
+        private int[] classIds = new int[INITIAL_CAPACITY];
+        private int[] methodIds = new int[INITIAL_CAPACITY];
+        private int[] descriptorIds = new int[INITIAL_CAPACITY];
+        private int[] sourceFileIds = new int[INITIAL_CAPACITY];
+        private int[] descriptionIds = new int[INITIAL_CAPACITY];
+        private int[] killingTestIds = new int[INITIAL_CAPACITY];
+        private int[] lineNumbers = new int[INITIAL_CAPACITY];
+        private byte[] mutatorOrdinals = new byte[INITIAL_CAPACITY];
+        private byte[] statusOrdinals = new byte[INITIAL_CAPACITY];
+
+        Builder() {
+            KNOWN_STATUSES.forEach(statuses::intern);
+        }
+
+        public Builder add(MutationResult mutation) {
+            if (size == classIds.length) {
+                grow();
+            }
+            classIds[size] = classes.intern(mutation.mutatedClass());
+            methodIds[size] = methods.intern(mutation.mutatedMethod());
+            descriptorIds[size] = descriptors.intern(mutation.methodDescription());
+            sourceFileIds[size] = sourceFiles.intern(mutation.sourceFile());
+            descriptionIds[size] = descriptions.intern(mutation.description());
+            killingTestIds[size] = killingTests.intern(mutation.killingTest());
+            lineNumbers[size] = mutation.lineNumber();
+            mutatorOrdinals[size] = ordinal(mutators, mutation.mutator(), "mutators");
+            statusOrdinals[size] = ordinal(statuses, mutation.status(), "statuses");
+            size++;
+            return this;
+        }
+
+        public MutationTable build() {
+            return new MutationTable(this);
+        }
+
+        private static byte ordinal(StringDictionary dictionary, String value, String column) {
+            // Null is stored as its own entry so that the ordinal always fits in an unsigned byte
+            int id = dictionary.intern(value == null ? "" : value);
+            if (id > 0xFF) {
+                throw new IllegalStateException("Too many distinct " + column + " (max 256)");
+            }
+            return (byte) id;
+        }
+
+        private void grow() {
+            int capacity = classIds.length * 2;
+            classIds = Arrays.copyOf(classIds, capacity);
+            methodIds = Arrays.copyOf(methodIds, capacity);
+            descriptorIds = Arrays.copyOf(descriptorIds, capacity);
+            sourceFileIds = Arrays.copyOf(sourceFileIds, capacity);
+            descriptionIds = Arrays.copyOf(descriptionIds, capacity);
+            killingTestIds = Arrays.copyOf(killingTestIds, capacity);
+            lineNumbers = Arrays.copyOf(lineNumbers, capacity);
+            mutatorOrdinals = Arrays.copyOf(mutatorOrdinals, capacity);
+            statusOrdinals = Arrays.copyOf(statusOrdinals, capacity);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package io.github.dubthree.mutantkiller.pit;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Parses the reports of several modules concurrently and merges them into one mutation set.
+ */
+public class PitReportMerger {
+
+    private final PitReportParser parser;
+    private final int parallelism;
+
+    public PitReportMerger() {
+        this(new PitReportParser(), Runtime.getRuntime().availableProcessors());
+    }
+
+    public PitReportMerger(PitReportParser parser, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        this.parser = parser;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Parse all reports on a bounded pool and merge the mutations accepted by the filter,
+     * in report order. The filter's limit applies to the merged result.
+     */
+    public List<ModuleMutation> parseAll(List<ModuleReport> reports, MutationFilter filter) throws IOException {
+        if (reports.isEmpty()) {
+            return List.of();
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, reports.size()));
+        try {
+            List<Future<List<MutationResult>>> parsed = new ArrayList<>();
+            for (ModuleReport report : reports) {
+                parsed.add(pool.submit(() -> parser.parse(report.reportFile(), filter)));
+            }
+
+            List<ModuleMutation> merged = new ArrayList<>();
+            for (int i = 0; i < reports.size() && merged.size() < filter.limit(); i++) {
+                ModuleReport report = reports.get(i);
+                for (MutationResult mutation : await(parsed.get(i), report)) {
+                    if (merged.size() >= filter.limit()) {
+                        break;
+                    }
+                    merged.add(new ModuleMutation(report, mutation));
+                }
+            }
+            return merged;
+        } finally {
+            // Reports still being parsed are no longer needed once the limit is reached
+            pool.shutdownNow();
+        }
+    }
+
+    private static List<MutationResult> await(Future<List<MutationResult>> future, ModuleReport report)
+            throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing " + report.reportFile(), e);
+        } catch (ExecutionException e) {
+            throw new IOException("Could not parse " + report.reportFile() + ": " + e.getCause().getMessage(),
+                e.getCause());
+        }
+    }
+}
@@ -1,81 +1,138 @@
 package io.github.dubthree.mutantkiller.pit;
 
-import com.fasterxml.jackson.dataformat.xml.XmlMapper;
-import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlElementWrapper;
-import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlProperty;
-import com.fasterxml.jackson.dataformat.xml.annotation.JacksonXmlRootElement;
-
+import javax.xml.stream.XMLInputFactory;
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Parses PIT mutation testing XML reports.
+ *
+ * <p>Reports are read with a StAX pull parser, one {@code <mutation>} element at a time,
+ * so memory use does not grow with the size of the report unless the caller collects the results.
+ * A report file may also be gzip-compressed, or a zip/tar/tar.gz archive containing one or more
+ * {@code mutations.xml} entries; {@code -} reads from stdin. Archives are decompressed while parsing.
  */
 public class PitReportParser {
 
-    private final XmlMapper xmlMapper;
+    private final XMLInputFactory inputFactory;
 
     public PitReportParser() {
-        this.xmlMapper = new XmlMapper();
+        this.inputFactory = XMLInputFactory.newFactory();
+        inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
     }
 
     /**
      * Parse a PIT mutations.xml file and return all mutation results.
      */
     public List<MutationResult> parse(File reportFile) throws IOException {
-        MutationsReport report = xmlMapper.readValue(reportFile, MutationsReport.class);
-        
-        if (report.mutations == null) {
-            return List.of();
+        return parse(reportFile, MutationFilter.all());
+    }
+
+    /**
+     * Parse a PIT mutations.xml file and return the mutations accepted by the filter.
+     */
+    public List<MutationResult> parse(File reportFile, MutationFilter filter) throws IOException {
+        try (Stream<MutationResult> mutations = stream(reportFile, filter)) {
+            return mutations.toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
+    }
 
-        return report.mutations.stream()
-            .map(this::toMutationResult)
-            .toList();
+    /**
+     * Parse a PIT mutations.xml file into a compact, dictionary-encoded table.
+     */
+    public MutationTable parseTable(File reportFile) throws IOException {
+        return parseTable(reportFile, MutationFilter.all());
     }
 
-    private MutationResult toMutationResult(MutationElement element) {
-        return new MutationResult(
-            element.mutatedClass,
-            element.mutatedMethod,
-            element.methodDescription,
-            element.lineNumber,
-            element.mutator,
-            element.description,
-            element.status,
-            element.sourceFile,
-            element.killingTest
-        );
+    /**
+     * Parse the mutations accepted by the filter into a compact, dictionary-encoded table.
+     */
+    public MutationTable parseTable(File reportFile, MutationFilter filter) throws IOException {
+        MutationTable.Builder table = MutationTable.builder();
+        parse(reportFile, filter, table::add);
+        return table.build();
+    }
+
+    /**
+     * Parse reports read from a stream into a table. The stream is not closed, and bytes after
+     * the last document may be left unread.
+     */
+    MutationTable parseTable(InputStream in) throws IOException {
+        MutationTable.Builder table = MutationTable.builder();
+        try (MutationReader reader = new MutationReader(ReportInput.open(in), inputFactory, MutationFilter.all())) {
+            reader.forEachRemaining(table::add);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return table.build();
     }
 
-    // XML mapping classes
+    /**
+     * Parse a PIT mutations.xml file, handing each mutation to the visitor as soon as it is read.
+     */
+    public void parse(File reportFile, Consumer<? super MutationResult> visitor) throws IOException {
+        parse(reportFile, MutationFilter.all(), visitor);
+    }
 
-    @JacksonXmlRootElement(localName = "mutations")
-    static class MutationsReport {
-        @JacksonXmlElementWrapper(useWrapping = false)
-        @JacksonXmlProperty(localName = "mutation")
-        List<MutationElement> mutations = new ArrayList<>();
+    /**
+     * Parse a PIT mutations.xml file, handing each mutation accepted by the filter to the visitor.
+     */
+    public void parse(File reportFile, MutationFilter filter, Consumer<? super MutationResult> visitor)
+            throws IOException {
+        try (MutationReader reader = open(reportFile, filter)) {
+            reader.forEachRemaining(visitor);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
     }
 
-    static class MutationElement {
-        @JacksonXmlProperty(isAttribute = true)
-        boolean detected;
+    /**
+     * Lazily stream the mutations of a PIT mutations.xml file.
+     * The stream holds the file open and must be closed by the caller.
+     * Malformed XML surfaces as an {@link UncheckedIOException} while consuming the stream.
+     */
+    public Stream<MutationResult> stream(File reportFile) throws IOException {
+        return stream(reportFile, MutationFilter.all());
+    }
 
-        @JacksonXmlProperty(isAttribute = true)
-        String status;
+    /**
+     * Lazily stream the mutations accepted by the filter. Rejected elements are skipped
+     * without building records, and the stream ends once the filter's limit is reached.
+     */
+    public Stream<MutationResult> stream(File reportFile, MutationFilter filter) throws IOException {
+        MutationReader reader = open(reportFile, filter);
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(reader, Spliterator.ORDERED | Spliterator.NONNULL),
+                false)
+            .onClose(() -> {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+    }
 
-        @JacksonXmlProperty(isAttribute = true)
-        int numberOfTestsRun;
+    /**
+     * Returns true if the report can be opened: an existing file, or {@code -} for stdin.
+     */
+    public static boolean exists(File reportFile) {
+        return ReportInput.isStdin(reportFile) || reportFile.isFile();
+    }
 
-        String sourceFile;
-        String mutatedClass;
-        String mutatedMethod;
-        String methodDescription;
-        int lineNumber;
-        String mutator;
-        String description;
-        String killingTest;
+    private MutationReader open(File reportFile, MutationFilter filter) throws IOException {
+        return new MutationReader(ReportInput.open(reportFile), inputFactory, filter);
     }
 }
@@ -0,0 +1,65 @@
+package io.github.dubthree.mutantkiller.pit;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+/**
+ * Writes mutation results in PIT's mutations.xml format, so that a subset of a report
+ * (e.g. the output of {@link ReportDiff}) can be fed back into {@code analyze} or {@code kill}.
+ */
+public class PitReportWriter {
+
+    private final XMLOutputFactory outputFactory = XMLOutputFactory.newFactory();
+
+    public void write(Iterable<MutationResult> mutations, File reportFile) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(reportFile.toPath()))) {
+            XMLStreamWriter xml = outputFactory.createXMLStreamWriter(out, "UTF-8");
+            xml.writeStartDocument("UTF-8", "1.0");
+            xml.writeCharacters("\n");
+            xml.writeStartElement("mutations");
+            xml.writeCharacters("\n");
+            for (MutationResult mutation : mutations) {
+                writeMutation(xml, mutation);
+            }
+            xml.writeEndElement();
+            xml.writeCharacters("\n");
+            xml.writeEndDocument();
+            xml.close();
+        } catch (XMLStreamException e) {
+            throw new IOException("Could not write PIT report: " + e.getMessage(), e);
+        }
+    }
+
+    private void writeMutation(XMLStreamWriter xml, MutationResult mutation) throws XMLStreamException {
+        xml.writeStartElement("mutation");
+        xml.writeAttribute("detected", String.valueOf(mutation.killed()));
+        if (mutation.status() != null) {
+            xml.writeAttribute("status", mutation.status());
+        }
+        writeElement(xml, "sourceFile", mutation.sourceFile());
+        writeElement(xml, "mutatedClass", mutation.mutatedClass());
+        writeElement(xml, "mutatedMethod", mutation.mutatedMethod());
+        writeElement(xml, "methodDescription", mutation.methodDescription());
+        writeElement(xml, "lineNumber", String.valueOf(mutation.lineNumber()));
+        writeElement(xml, "mutator", mutation.mutator());
+        writeElement(xml, "killingTest", mutation.killingTest());
+        writeElement(xml, "description", mutation.description());
+        xml.writeEndElement();
+        xml.writeCharacters("\n");
+    }
+
+    private void writeElement(XMLStreamWriter xml, String name, String value) throws XMLStreamException {
+        if (value == null) {
+            return;
+        }
+        xml.writeStartElement(name);
+        xml.writeCharacters(value);
+        xml.writeEndElement();
+    }
+}
@@ -0,0 +1,108 @@
+package io.github.dubthree.mutantkiller.pit;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Compares a current PIT report against a baseline and keeps only the survivors
+ * that are new work: mutants that newly survived, or surviving mutants whose line moved.
+ *
+ * <p>Mutants are matched on {@link MutationKey} through hash indexes built from the baseline,
+ * so the comparison is linear in the size of both reports. Several mutants can share a key
+ * (e.g. two conditionals on one line), so matches are counted rather than just looked up.
+ */
+public class ReportDiff {
+
+    /**
+     * Why a survivor was reported.
+     */
+    public enum Change {
+        /** No mutant with this class, method, descriptor and mutator existed in the baseline. */
+        NEW,
+        /** The mutant existed in the baseline but was killed there. */
+        NEWLY_SURVIVED,
+        /** A surviving baseline mutant matches except for its line number. */
+        MOVED
+    }
+
+    /**
+     * A survivor of the current report that needs attention.
+     *
+     * @param previousLine the baseline line of a {@link Change#MOVED} mutant, 0 otherwise
+     */
+    public record Entry(MutationResult mutation, Change change, int previousLine) {
+    }
+
+    private final Map<MutationKey, Counts> baseline = new HashMap<>();
+
+    private ReportDiff() {
+    }
+
+    /**
+     * Diff the survivors of {@code current} against {@code baseline}.
+     */
+    public static List<Entry> compare(Stream<MutationResult> baseline, Stream<MutationResult> current) {
+        ReportDiff diff = new ReportDiff();
+        baseline.forEach(diff::index);
+        return diff.diff(current);
+    }
+
+    private void index(MutationResult mutation) {
+        Counts counts = baseline.computeIfAbsent(MutationKey.of(mutation), key -> new Counts());
+        if (mutation.survived()) {
+            counts.survived++;
+        } else {
+            counts.other++;
+        }
+    }
+
+    private List<Entry> diff(Stream<MutationResult> current) {
+        List<Entry> changes = new ArrayList<>();
+        List<Integer> unmatched = new ArrayList<>();
+
+        // Exact matches first, so that line-insensitive matching only sees what is left over
+        current.filter(MutationResult::survived).forEach(mutation -> {
+            Counts counts = baseline.get(MutationKey.of(mutation));
+            if (counts != null && counts.survived > 0) {
+                counts.survived--;
+            } else if (counts != null && counts.other > 0) {
+                counts.other--;
+                changes.add(new Entry(mutation, Change.NEWLY_SURVIVED, 0));
+            } else {
+                unmatched.add(changes.size());
+                changes.add(new Entry(mutation, Change.NEW, 0));
+            }
+        });
+
+        if (unmatched.isEmpty()) {
+            return changes;
+        }
+
+        // Remaining baseline survivors, by key without line number
+        Map<MutationKey, Deque<Integer>> remainingLines = new HashMap<>();
+        baseline.forEach((key, counts) -> {
+            for (int i = 0; i < counts.survived; i++) {
+                remainingLines.computeIfAbsent(key.anyLine(), k -> new ArrayDeque<>()).add(key.lineNumber());
+            }
+        });
+
+        for (int index : unmatched) {
+            MutationResult mutation = changes.get(index).mutation();
+            Deque<Integer> lines = remainingLines.get(MutationKey.of(mutation).anyLine());
+            if (lines != null && !lines.isEmpty()) {
+                changes.set(index, new Entry(mutation, Change.MOVED, lines.poll()));
+            }
+        }
+        return changes;
+    }
+
+    private static final class Counts {
+        int survived;
+        int other;
+    }
+}
@@ -0,0 +1,317 @@
+package io.github.dubthree.mutantkiller.pit;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Source of one or more mutations.xml documents: a plain report, a gzip-compressed report,
+ * or every {@code mutations.xml} entry of a zip, tar or tar.gz archive. {@code -} reads stdin.
+ *
+ * <p>The format is detected from magic bytes, not the file name, so it also works on stdin.
+ * Archives are decompressed as they are read; nothing is extracted to disk. CI artifacts often
+ * hold module reports next to an aggregate report, or several timestamped runs, so a mutant found
+ * in more than one entry of an archive is read only from the first (see {@link MutationReader}).
+ */
+abstract class ReportInput implements Closeable {
+
+    private static final String REPORT_NAME = "mutations.xml";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Returns the next report document, or null if there are no more.
+     * The returned stream is only valid until the next call.
+     */
+    abstract InputStream next() throws IOException;
+
+    /**
+     * Whether the input may hold several reports, e.g. module and aggregate reports, or several
+     * timestamped runs, which can list the same mutants.
+     */
+    boolean archive() {
+        return true;
+    }
+
+    static boolean isStdin(File reportFile) {
+        return "-".equals(reportFile.getPath());
+    }
+
+    static ReportInput open(File reportFile) throws IOException {
+        InputStream raw = isStdin(reportFile)
+            ? System.in
+            : Files.newInputStream(reportFile.toPath());
+        return detect(new BufferedInputStream(raw, BUFFER_SIZE));
+    }
+
+    /**
+     * Read reports from a stream, which is left open for the caller to close.
+     */
+    static ReportInput open(InputStream in) throws IOException {
+        return detect(new BufferedInputStream(unclosable(in), BUFFER_SIZE));
+    }
+
+    private static ReportInput detect(BufferedInputStream in) throws IOException {
+        byte[] magic = peek(in, 262);
+        if (magic.length >= 2 && (magic[0] & 0xFF) == 0x1F && (magic[1] & 0xFF) == 0x8B) {
+            return detect(new BufferedInputStream(new GZIPInputStream(in, BUFFER_SIZE), BUFFER_SIZE));
+        }
+        if (magic.length >= 4 && magic[0] == 'P' && magic[1] == 'K' && magic[2] == 3 && magic[3] == 4) {
+            return new ZipInput(new ZipInputStream(in));
+        }
+        if (magic.length >= 262 && new String(magic, 257, 5, StandardCharsets.US_ASCII).equals("ustar")) {
+            return new TarInput(in);
+        }
+        return new SingleInput(in);
+    }
+
+    private static byte[] peek(BufferedInputStream in, int length) throws IOException {
+        in.mark(length);
+        byte[] bytes = in.readNBytes(length);
+        in.reset();
+        return bytes;
+    }
+
+    private static boolean isReport(String entryName) {
+        return entryName.equals(REPORT_NAME) || entryName.endsWith("/" + REPORT_NAME);
+    }
+
+    /**
+     * Keeps the XML parser from closing the archive stream at the end of an entry.
+     */
+    private static InputStream unclosable(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    private static final class SingleInput extends ReportInput {
+        private final InputStream in;
+        private boolean consumed;
+
+        SingleInput(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        boolean archive() {
+            return false;
+        }
+
+        @Override
+        InputStream next() {
+            if (consumed) {
+                return null;
+            }
+            consumed = true;
+            return unclosable(in);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static final class ZipInput extends ReportInput {
+        private final ZipInputStream zip;
+
+        ZipInput(ZipInputStream zip) {
+            this.zip = zip;
+        }
+
+        @Override
+        InputStream next() throws IOException {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (!entry.isDirectory() && isReport(entry.getName())) {
+                    return unclosable(zip);
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            zip.close();
+        }
+    }
+
+    /**
+     * Minimal streaming reader for ustar/GNU/pax tar archives.
+     */
+    private static final class TarInput extends ReportInput {
+        private static final int BLOCK = 512;
+
+        private final InputStream in;
+        private long pendingSkip;
+
+        TarInput(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        InputStream next() throws IOException {
+            String longName = null;
+            while (true) {
+                skipFully(pendingSkip);
+                pendingSkip = 0;
+
+                byte[] header = in.readNBytes(BLOCK);
+                if (header.length < BLOCK || isZeroBlock(header)) {
+                    return null;
+                }
+
+                long size = parseOctal(header, 124, 12);
+                long padded = (size + BLOCK - 1) / BLOCK * BLOCK;
+                char type = (char) header[156];
+                String name = longName != null ? longName : entryName(header);
+                longName = null;
+
+                if (type == 'L') {
+                    // GNU long name: the entry data is the name of the following entry
+                    longName = readName(size);
+                    skipFully(padded - size);
+                } else if (type == 'x') {
+                    // pax extended header: may carry the path of the following entry
+                    longName = paxPath(new String(in.readNBytes((int) size), StandardCharsets.UTF_8));
+                    skipFully(padded - size);
+                } else if ((type == '0' || type == '\0') && isReport(name)) {
+                    pendingSkip = padded;
+                    return new BoundedInput(in, size, this);
+                } else {
+                    skipFully(padded);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private void skipFully(long bytes) throws IOException {
+            if (bytes > 0) {
+                in.skipNBytes(bytes);
+            }
+        }
+
+        private String readName(long size) throws IOException {
+            String name = new String(in.readNBytes((int) size), StandardCharsets.UTF_8);
+            int nul = name.indexOf('\0');
+            return nul >= 0 ? name.substring(0, nul) : name;
+        }
+
+        private static String entryName(byte[] header) {
+            String name = cString(header, 0, 100);
+            String prefix = cString(header, 345, 155);
+            return prefix.isEmpty() ? name : prefix + "/" + name;
+        }
+
+        private static String paxPath(String records) {
+            for (String record : records.split("\n")) {
+                int eq = record.indexOf(" path=");
+                if (eq >= 0) {
+                    return record.substring(eq + " path=".length());
+                }
+            }
+            return null;
+        }
+
+        private static String cString(byte[] bytes, int offset, int length) {
+            int end = offset;
+            while (end < offset + length && bytes[end] != 0) {
+                end++;
+            }
+            return new String(bytes, offset, end - offset, StandardCharsets.UTF_8);
+        }
+
+        private static long parseOctal(byte[] bytes, int offset, int length) throws IOException {
+            long value = 0;
+            for (int i = offset; i < offset + length; i++) {
+                byte b = bytes[i];
+                if (b == 0 || b == ' ') {
+                    if (value > 0) {
+                        break;
+                    }
+                    continue;
+                }
+                if (b < '0' || b > '7') {
+                    throw new IOException("Invalid tar header");
+                }
+                value = value * 8 + (b - '0');
+            }
+            return value;
+        }
+
+        private static boolean isZeroBlock(byte[] block) {
+            for (byte b : block) {
+                if (b != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void consumed(long bytes) {
+            pendingSkip -= bytes;
+        }
+    }
+
+    /**
+     * Exposes exactly one tar entry's data and reports consumed bytes back to the archive.
+     */
+    private static final class BoundedInput extends InputStream {
+        private final InputStream in;
+        private final TarInput tar;
+        private long remaining;
+
+        BoundedInput(InputStream in, long size, TarInput tar) {
+            this.in = in;
+            this.remaining = size;
+            this.tar = tar;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated tar entry");
+            }
+            remaining--;
+            tar.consumed(1);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read < 0) {
+                throw new EOFException("Truncated tar entry");
+            }
+            remaining -= read;
+            tar.consumed(read);
+            return read;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
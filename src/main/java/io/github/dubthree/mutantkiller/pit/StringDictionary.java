@@ -0,0 +1,52 @@
+package io.github.dubthree.mutantkiller.pit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interns the distinct values of a column and hands out dense integer ids.
+ * Id {@code -1} encodes {@code null}.
+ */
+final class StringDictionary {
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    int intern(String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = values.size();
+            ids.put(value, id);
+            values.add(value);
+        }
+        return id;
+    }
+
+    String get(int id) {
+        return id < 0 ? null : values.get(id);
+    }
+
+    int size() {
+        return values.size();
+    }
+
+    /**
+     * Values in id order.
+     */
+    List<String> values() {
+        return values;
+    }
+
+    /**
+     * Returns the id of the value, or -1 if it has never been interned.
+     */
+    int find(String value) {
+        Integer id = value == null ? null : ids.get(value);
+        return id == null ? -1 : id;
+    }
+}
@@ -0,0 +1,132 @@
+package io.github.dubthree.mutantkiller.analysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallableIndexTest {
+
+    private static final String SOURCE = """
+        package p;
+
+        import java.util.List;
+        import java.util.function.IntUnaryOperator;
+
+        public class Sample<T> {
+            static final int BASE = compute(2);
+            private int offset = BASE + 1;
+
+            Sample() {
+                this(0);
+            }
+
+            Sample(int start) {
+                offset += start;
+            }
+
+            int add(int x) {
+                return x + offset;
+            }
+
+            long add(long x) {
+                return x + offset;
+            }
+
+            int add(List<T> values, T extra) {
+                return values.size() + 1;
+            }
+
+            static int compute(int x) {
+                IntUnaryOperator twice = y -> y * 2;
+                return twice.applyAsInt(x);
+            }
+
+            class Inner {
+                final int value;
+
+                Inner(int value) {
+                    this.value = value + offset;
+                }
+            }
+
+            enum Color {
+                RED(1), GREEN(2);
+
+                final int code;
+
+                Color(int code) {
+                    this.code = code;
+                }
+            }
+        }
+        """;
+
+    private final CallableIndex index = CallableIndex.of(JavaParserPool.shared().parse(SOURCE));
+
+    @Test
+    void picksOverloadByDescriptor() {
+        assertResolves("add", "(I)I", 19, CallableIndex.Kind.METHOD, 18);
+        assertResolves("add", "(J)J", 23, CallableIndex.Kind.METHOD, 22);
+        // Type variables erase to Object; List<T> to List
+        assertResolves("add", "(Ljava/util/List;Ljava/lang/Object;)I", 27, CallableIndex.Kind.METHOD, 26);
+    }
+
+    @Test
+    void fallsBackToNameAndDescriptorOffTheReportedLine() {
+        assertResolves("add", "(J)J", 1, CallableIndex.Kind.METHOD, 22);
+    }
+
+    @Test
+    void picksConstructorOverloads() {
+        assertResolves("<init>", "()V", 11, CallableIndex.Kind.CONSTRUCTOR, 10);
+        assertResolves("<init>", "(I)V", 15, CallableIndex.Kind.CONSTRUCTOR, 14);
+    }
+
+    @Test
+    void skipsSyntheticConstructorParameters() {
+        // The outer instance of an inner class
+        assertResolves("<init>", "(Lp/Sample;I)V", 39, CallableIndex.Kind.CONSTRUCTOR, 38);
+        // The name and ordinal of an enum constant
+        assertResolves("<init>", "(Ljava/lang/String;II)V", 49, CallableIndex.Kind.CONSTRUCTOR, 48);
+    }
+
+    @Test
+    void attributesFieldInitializersToInitializers() {
+        assertResolves("<clinit>", "()V", 7, CallableIndex.Kind.STATIC_INITIALIZER, 7);
+        // Instance field initializers run in every constructor, whatever its descriptor
+        assertResolves("<init>", "(I)V", 8, CallableIndex.Kind.INSTANCE_INITIALIZER, 8);
+    }
+
+    @Test
+    void resolvesSyntheticLambdaMethodsToTheInnermostLambda() {
+        assertResolves("lambda$compute$0", "(I)I", 31, CallableIndex.Kind.LAMBDA, 31);
+        assertTrue(index.resolve("lambda$add$0", "(I)I", 19).isEmpty());
+    }
+
+    @Test
+    void listsCallablesSpanningALineOutermostFirst() {
+        List<CallableIndex.Callable> spanning = index.containing(31);
+
+        assertEquals(List.of(CallableIndex.Kind.METHOD, CallableIndex.Kind.LAMBDA),
+            spanning.stream().map(CallableIndex.Callable::kind).toList());
+        assertEquals("compute", spanning.get(0).name());
+        assertTrue(index.containing(5).isEmpty());
+    }
+
+    @Test
+    void parsesDescriptorTypes() {
+        assertEquals(List.of("Entry", "int[]"), CallableIndex.descriptorTypes("(Ljava/util/Map$Entry;[I)V"));
+        assertEquals(List.of("String[][]", "long", "boolean"),
+            CallableIndex.descriptorTypes("([[Ljava/lang/String;JZ)V"));
+        assertEquals(List.of(), CallableIndex.descriptorTypes("()V"));
+    }
+
+    private void assertResolves(String method, String descriptor, int line, CallableIndex.Kind kind, int beginLine) {
+        CallableIndex.Callable callable = index.resolve(method, descriptor, line)
+            .orElseThrow(() -> new AssertionError("Not resolved: " + method + descriptor + " at line " + line));
+        assertEquals(kind, callable.kind(), method + descriptor);
+        assertEquals(beginLine, callable.beginLine(), method + descriptor);
+    }
+}
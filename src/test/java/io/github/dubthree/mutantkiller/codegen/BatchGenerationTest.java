@@ -0,0 +1,155 @@
+package io.github.dubthree.mutantkiller.codegen;
+
+import io.github.dubthree.mutantkiller.analysis.MutantAnalysis;
+import io.github.dubthree.mutantkiller.analysis.MutantGroup;
+import io.github.dubthree.mutantkiller.config.MutantKillerConfig;
+import io.github.dubthree.mutantkiller.pit.MutationResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs batches against {@link FakeLlmServer}'s emulation of the message batch endpoints.
+ */
+class BatchGenerationTest {
+
+    @TempDir
+    Path cacheDir;
+
+    @Test
+    void submitsOneBatchAndMapsEveryResult() throws Exception {
+        try (FakeLlmServer server = FakeLlmServer.start(FakeLlmServer.Options.parse("latency=0ms,jitter=0ms"))) {
+            Map<Integer, GenerationEngine.Completion<Integer>> completions = run(server, work(4));
+
+            assertEquals(1, server.batches());
+            assertEquals(List.of(0, 1, 2, 3), List.copyOf(completions.keySet()));
+            for (GenerationEngine.Completion<Integer> completion : completions.values()) {
+                assertNull(completion.error());
+                assertTrue(completion.improvement().isPresent());
+            }
+            assertFalse(hasState());
+        }
+    }
+
+    @Test
+    void mapsErroredResultsToFailedCompletions() throws Exception {
+        try (FakeLlmServer server = FakeLlmServer.start(FakeLlmServer.Options.parse("latency=0ms,jitter=0ms,500=1"))) {
+            Map<Integer, GenerationEngine.Completion<Integer>> completions = run(server, work(2));
+
+            assertEquals(2, completions.size());
+            for (GenerationEngine.Completion<Integer> completion : completions.values()) {
+                assertTrue(completion.improvement().isEmpty());
+                assertTrue(completion.error().getMessage().startsWith("Batch request failed"));
+            }
+        }
+    }
+
+    @Test
+    void resumesAStoredBatchInsteadOfSubmittingAgain() throws Exception {
+        try (FakeLlmServer server = FakeLlmServer.start(FakeLlmServer.Options.parse("latency=200ms,jitter=0ms"))) {
+            stopWhilePolling(server, work(3));
+            assertEquals(1, server.batches());
+            Thread.sleep(300);
+
+            Map<Integer, GenerationEngine.Completion<Integer>> completions = run(server, work(3));
+
+            assertEquals(1, server.batches());
+            assertEquals(3, completions.size());
+            assertTrue(completions.values().stream().allMatch(c -> c.improvement().isPresent()));
+            assertFalse(hasState());
+        }
+    }
+
+    @Test
+    void resubmitsABatchThatCannotBeRead() throws Exception {
+        try (FakeLlmServer first = FakeLlmServer.start(FakeLlmServer.Options.parse("latency=10s,jitter=0ms"))) {
+            stopWhilePolling(first, work(3));
+        }
+        // Another server does not know the stored batch id, and answers 404
+        try (FakeLlmServer server = FakeLlmServer.start(FakeLlmServer.Options.parse("latency=0ms,jitter=0ms"))) {
+            Map<Integer, GenerationEngine.Completion<Integer>> completions = run(server, work(3));
+
+            assertEquals(1, server.batches());
+            assertEquals(3, completions.size());
+            assertTrue(completions.values().stream().allMatch(c -> c.improvement().isPresent()));
+            assertFalse(hasState());
+        }
+    }
+
+    private Map<Integer, GenerationEngine.Completion<Integer>> run(FakeLlmServer server,
+                                                                  Map<Integer, MutantGroup> work) throws Exception {
+        MutantKillerConfig config = config(server);
+        Map<Integer, GenerationEngine.Completion<Integer>> completions = new TreeMap<>();
+        for (GenerationEngine.Completion<Integer> completion
+                : new BatchGeneration(new TestImprover(config), config).generateAll(work)) {
+            assertNull(completions.put(completion.tag(), completion), "Completed twice: " + completion.tag());
+        }
+        return completions;
+    }
+
+    /**
+     * Submit a batch and interrupt the run once its id is stored, as if the process were stopped.
+     */
+    private void stopWhilePolling(FakeLlmServer server, Map<Integer, MutantGroup> work) throws Exception {
+        MutantKillerConfig config = config(server);
+        BatchGeneration generation = new BatchGeneration(new TestImprover(config), config);
+        Thread run = new Thread(() -> {
+            try {
+                generation.generateAll(work);
+            } catch (InterruptedException e) {
+                // Expected
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        run.start();
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!hasState() && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        run.interrupt();
+        run.join();
+        assertTrue(hasState());
+    }
+
+    private boolean hasState() throws IOException {
+        Path dir = cacheDir.resolve("batches");
+        if (!Files.isDirectory(dir)) {
+            return false;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.anyMatch(file -> file.toString().endsWith(".properties"));
+        }
+    }
+
+    private MutantKillerConfig config(FakeLlmServer server) {
+        return MutantKillerConfig.builder()
+            .apiKey("offline")
+            .baseUrl(server.baseUrl())
+            .cacheDir(cacheDir)
+            .build();
+    }
+
+    private static Map<Integer, MutantGroup> work(int count) {
+        Map<Integer, MutantGroup> work = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            MutationResult mutation = new MutationResult("com.example.Foo", "bar", "(I)I", 10 + i,
+                "org.pitest.mutationtest.engine.gregor.mutators.MathMutator", "Replaced operator " + i,
+                "SURVIVED", "Foo.java", null);
+            work.put(i, MutantGroup.of(new MutantAnalysis(mutation, Path.of("Foo.java"), "",
+                "int bar(int x) { return x + 1; }", "return x + 1;\n", null, Path.of("FooTest.java"),
+                "class FooTest {}", null)));
+        }
+        return work;
+    }
+}
@@ -0,0 +1,100 @@
+package io.github.dubthree.mutantkiller.codegen;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CodeBlockExtractorTest {
+
+    private static final String RESPONSE = """
+        The test below fails when the boundary moves.
+
+        ```java
+        @Test
+        void rejectsZero() {
+            assertThrows(IllegalArgumentException.class, () -> Foo.of(0));
+        }
+        ```
+
+        It calls the mutated method directly.
+        """;
+
+    @Test
+    void completesAtTheClosingFence() {
+        CodeBlockExtractor extractor = new CodeBlockExtractor();
+
+        assertTrue(extractor.append(RESPONSE));
+        assertTrue(extractor.opened());
+        assertEquals(RESPONSE, extractor.text());
+    }
+
+    @Test
+    void completesAsSoonAsTheClosingFenceArrivesOneCharacterAtATime() {
+        CodeBlockExtractor extractor = new CodeBlockExtractor();
+        int closing = RESPONSE.indexOf("```", RESPONSE.indexOf("```java") + 1);
+
+        for (int i = 0; i < RESPONSE.length(); i++) {
+            boolean complete = extractor.append(String.valueOf(RESPONSE.charAt(i)));
+            assertEquals(i >= closing + 2, complete, "after character " + i);
+            assertEquals(i >= RESPONSE.indexOf("```java") + "```java\n".length() - 1, extractor.opened(),
+                "after character " + i);
+        }
+    }
+
+    @Test
+    void recognizesFencesSplitAcrossDeltas() {
+        CodeBlockExtractor extractor = new CodeBlockExtractor();
+
+        assertFalse(extractor.append("Here it is:\n`"));
+        assertFalse(extractor.append("``ja"));
+        assertFalse(extractor.opened());
+        assertFalse(extractor.append("va\nvoid t() {}\n`"));
+        assertTrue(extractor.opened());
+        assertFalse(extractor.append("`"));
+        assertTrue(extractor.append("`"));
+    }
+
+    @Test
+    void opensOnAFenceWithoutLanguage() {
+        CodeBlockExtractor extractor = new CodeBlockExtractor();
+
+        assertTrue(extractor.append("```\nvoid t() {}\n```\n"));
+    }
+
+    @Test
+    void skipsBlocksInOtherLanguages() {
+        CodeBlockExtractor extractor = new CodeBlockExtractor();
+
+        assertFalse(extractor.append("Add the dependency:\n```xml\n<dependency/>\n```\n"));
+        assertFalse(extractor.opened());
+        assertFalse(extractor.append("```bash\nmvn test\n```\nThen the test:\n"));
+        assertFalse(extractor.opened());
+        assertTrue(extractor.append("```java\nvoid t() {}\n```"));
+    }
+
+    @Test
+    void ignoresFencesInProse() {
+        CodeBlockExtractor extractor = new CodeBlockExtractor();
+
+        assertFalse(extractor.append("Wrap the code in ```java fences.\n"));
+        assertFalse(extractor.opened());
+        assertTrue(extractor.append("```java\nvoid t() {}\n```\n"));
+    }
+
+    @Test
+    void isIncompleteWithoutAClosingFence() {
+        CodeBlockExtractor extractor = new CodeBlockExtractor();
+
+        assertFalse(extractor.append("```java\nvoid t() {\n    assertEquals(1, 1);\n"));
+        assertTrue(extractor.opened());
+        assertFalse(extractor.complete());
+    }
+
+    @Test
+    void estimatesTokensFromCharacters() {
+        CodeBlockExtractor extractor = new CodeBlockExtractor();
+        extractor.append("x".repeat(400));
+
+        assertEquals(100, extractor.tokens());
+    }
+}
@@ -0,0 +1,143 @@
+package io.github.dubthree.mutantkiller.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PromptTemplateTest {
+
+    @Test
+    void replacesVariablesAndLeavesMissingOnesEmpty() {
+        PromptTemplate template = PromptTemplate.compile("Class {{ name }} line {{line}}{{missing}}.");
+
+        assertEquals("Class Foo line 12.", template.render(Map.of("name", "Foo", "line", 12)));
+    }
+
+    @Test
+    void rendersConditionalsByWhetherTheValueIsSet() {
+        PromptTemplate template = PromptTemplate.compile("{{#if x}}yes{{else}}no{{/if}}");
+
+        assertEquals("yes", template.render(Map.of("x", "a")));
+        assertEquals("yes", template.render(Map.of("x", true)));
+        assertEquals("no", template.render(Map.of()));
+        assertEquals("no", template.render(Map.of("x", " ")));
+        assertEquals("no", template.render(Map.of("x", false)));
+        assertEquals("no", template.render(Map.of("x", List.of())));
+    }
+
+    @Test
+    void rendersEachElementWithItsKeysInScope() {
+        PromptTemplate template = PromptTemplate.compile("{{#each items}}{{label}}@{{line}} in {{owner}};{{/each}}");
+        Map<String, Object> values = Map.of("owner", "Foo", "items", List.of(
+            Map.of("label", "M1", "line", 3),
+            Map.of("label", "M2", "line", 7, "owner", "Bar")));
+
+        assertEquals("M1@3 in Foo;M2@7 in Bar;", template.render(values));
+    }
+
+    @Test
+    void dropsLinesHoldingOnlyABlockTag() {
+        PromptTemplate template = PromptTemplate.compile("""
+            {{! a comment
+                over two lines }}
+            before
+              {{#if x}}
+            inside {{x}}
+            {{/if}}
+            after {{#if x}}inline{{/if}}
+            """);
+
+        assertEquals("before\ninside 1\nafter inline\n", template.render(Map.of("x", 1)));
+        assertEquals("before\nafter \n", template.render(Map.of()));
+    }
+
+    @Test
+    void recordsWherePartsStart() {
+        PromptTemplate template = PromptTemplate.compile("one\n{{---}}\n{{#if x}}\ntwo\n{{/if}}\n{{---}}\nthree\n");
+        StringBuilder out = new StringBuilder("prefix ");
+
+        int[] breaks = template.render(Map.of("x", true), out);
+
+        assertEquals(3, template.parts());
+        assertEquals("prefix one\ntwo\nthree\n", out.toString());
+        assertArrayEquals(new int[] {11, 15}, breaks);
+        // Without the conditional the second part is empty
+        assertArrayEquals(new int[] {4, 4}, template.render(Map.of(), new StringBuilder()));
+    }
+
+    @Test
+    void estimatesTheRenderedSize() {
+        PromptTemplate template = PromptTemplate.compile("{{a}}-{{#each b}}{{c}}{{/each}}");
+        Map<String, Object> values = Map.of("a", "xyz", "b", List.of(Map.of("c", "12"), Map.of("c", "345")));
+
+        assertEquals(template.render(values).length(), template.estimateSize(values));
+    }
+
+    @Test
+    void splitsTheDefaultPromptFromTheMostToTheLeastShared() {
+        PromptTemplate template = MutantKillerConfig.builder().apiKey("offline").build().template("analyze");
+        Map<String, Object> values = new HashMap<>();
+        values.put("existingTestCode", "class FooTest {}");
+        values.put("methodCode", "int bar(int x) { return x + 1; }");
+        values.put("mutatedClass", "com.example.Foo");
+        values.put("mutatedMethod", "bar");
+        values.put("lineNumber", 10);
+        values.put("mutatorDescription", "Replaced integer addition with subtraction");
+        values.put("contextAroundMutation", ">>> return x + 1;");
+        StringBuilder out = new StringBuilder();
+
+        int[] breaks = template.render(values, out);
+
+        assertEquals(3, template.parts());
+        assertEquals(2, breaks.length);
+        String shared = out.substring(0, breaks[0]);
+        String method = out.substring(breaks[0], breaks[1]);
+        String mutation = out.substring(breaks[1]);
+        assertTrue(shared.contains("class FooTest {}"), shared);
+        assertTrue(method.startsWith("## Full Method\n"), method);
+        assertFalse(method.contains("## Declarations"), method);
+        assertTrue(mutation.startsWith("## Mutation Details\n"), mutation);
+        assertTrue(mutation.contains("- Line: 10\n"), mutation);
+        assertFalse(out.toString().contains("{{"), out.toString());
+    }
+
+    @Test
+    void rendersTheDefaultPromptForAGroup() {
+        PromptTemplate template = MutantKillerConfig.builder().apiKey("offline").build().template("analyze");
+        Map<String, Object> values = Map.of(
+            "group", true,
+            "mutatedClass", "com.example.Foo",
+            "mutatedMethod", "bar",
+            "mutations", List.of(
+                Map.of("label", "M1", "lineNumber", 10, "mutatorDescription", "negated conditional"),
+                Map.of("label", "M2", "lineNumber", 12, "mutatorDescription", "removed call")),
+            "contexts", List.of(Map.of("lineNumber", 10, "contextAroundMutation", ">>> if (x > 0)")));
+
+        String prompt = template.render(values);
+
+        assertTrue(prompt.contains("- M1: line 10, negated conditional\n- M2: line 12, removed call\n"), prompt);
+        assertTrue(prompt.contains("## Code Context for Line 10"), prompt);
+        assertFalse(prompt.contains("## Mutation Details"), prompt);
+    }
+
+    @Test
+    void rejectsMalformedTemplates() {
+        assertError("Line 2: Unclosed tag", "a\n{{name");
+        assertError("Unclosed {{#if x}}", "{{#if x}}a");
+        assertError("Line 1: {{/each}} without a matching {{#each}}", "{{#if x}}a{{/each}}");
+        assertError("Line 2: {{else}} outside of {{#if}}", "{{#each x}}\n{{else}}{{/each}}");
+        assertError("Line 1: {{else}} outside of {{#if}}", "{{#if x}}a{{else}}b{{else}}c{{/if}}");
+        assertError("Line 3: {{---}} inside {{#if}}", "{{#if x}}\na\n{{---}}\n{{/if}}");
+        assertError("Line 1: Invalid name in {{#if a-b}}", "{{#if a-b}}{{/if}}");
+        assertError("Line 1: Unknown tag {{>partial}}", "{{>partial}}");
+    }
+
+    private static void assertError(String message, String source) {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> PromptTemplate.compile(source));
+        assertEquals(message, e.getMessage());
+    }
+}
@@ -0,0 +1,123 @@
+package io.github.dubthree.mutantkiller.pit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MutationReportCacheTest {
+
+    /** Offset of the report's mtime in the cache header, after the magic, version and size. */
+    private static final int MODIFIED_OFFSET = 16;
+
+    @TempDir
+    Path dir;
+
+    /** Counts the reports actually parsed, as opposed to read from the cache. */
+    private static final class CountingParser extends PitReportParser {
+        int parsed;
+
+        @Override
+        MutationTable parseTable(InputStream in) throws IOException {
+            parsed++;
+            return super.parseTable(in);
+        }
+    }
+
+    private final CountingParser parser = new CountingParser();
+    private final MutationReportCache cache = new MutationReportCache(parser);
+
+    @Test
+    void writesTheCacheAndServesLaterOpensFromIt() throws IOException {
+        File report = report(3, 0);
+
+        List<MutationResult> parsed = cache.open(report).stream().toList();
+        assertTrue(Files.isRegularFile(MutationReportCache.cacheFile(report)));
+        List<MutationResult> cached = cache.open(report).stream().toList();
+
+        assertEquals(1, parser.parsed);
+        assertEquals(3, parsed.size());
+        assertEquals(parsed, cached);
+        assertEquals(new PitReportParser().parse(report), cached);
+    }
+
+    @Test
+    void recordsANewMtimeWhenTheContentIsUnchanged() throws IOException {
+        File report = report(3, 0);
+        List<MutationResult> parsed = cache.open(report).stream().toList();
+        FileTime touched = FileTime.fromMillis(Files.getLastModifiedTime(report.toPath()).toMillis() + 60_000);
+        Files.setLastModifiedTime(report.toPath(), touched);
+
+        assertEquals(parsed, cache.open(report).stream().toList());
+
+        assertEquals(1, parser.parsed);
+        assertEquals(touched.toMillis(), cachedModified(report));
+    }
+
+    @Test
+    void reparsesAChangedReport() throws IOException {
+        File report = report(3, 0);
+        cache.open(report);
+        long modified = Files.getLastModifiedTime(report.toPath()).toMillis();
+        // Same size, other lines; the mtime is kept so only the hash tells them apart
+        report(3, 1);
+        Files.setLastModifiedTime(report.toPath(), FileTime.fromMillis(modified + 60_000));
+
+        MutationTable table = cache.open(report);
+
+        assertEquals(2, parser.parsed);
+        assertEquals(List.of(11, 12, 13), table.stream().map(MutationResult::lineNumber).toList());
+        assertEquals(modified + 60_000, cachedModified(report));
+    }
+
+    @Test
+    void reparsesWhenTheCacheIsCorrupt() throws IOException {
+        File report = report(2, 0);
+        cache.open(report);
+        Files.write(MutationReportCache.cacheFile(report), new byte[] {1, 2, 3});
+
+        assertEquals(2, cache.open(report).size());
+        assertEquals(2, cache.open(report).size());
+
+        assertEquals(2, parser.parsed);
+    }
+
+    /**
+     * Write a report of surviving mutations on lines 10 + shift and on.
+     */
+    private File report(int count, int shift) throws IOException {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<mutations>\n");
+        for (int i = 0; i < count; i++) {
+            xml.append("<mutation detected='false' status='SURVIVED' numberOfTestsRun='1'>")
+                .append("<sourceFile>Foo.java</sourceFile><mutatedClass>com.example.Foo</mutatedClass>")
+                .append("<mutatedMethod>bar</mutatedMethod><methodDescription>(I)I</methodDescription>")
+                .append("<lineNumber>").append(10 + shift + i).append("</lineNumber>")
+                .append("<mutator>org.pitest.mutationtest.engine.gregor.mutators.MathMutator</mutator>")
+                .append("<killingTest/><description>Replaced integer addition with subtraction</description>")
+                .append("</mutation>\n");
+        }
+        xml.append("</mutations>\n");
+        Path report = dir.resolve("mutations.xml");
+        Files.writeString(report, xml);
+        return report.toFile();
+    }
+
+    private static long cachedModified(File report) throws IOException {
+        try (FileChannel channel = FileChannel.open(MutationReportCache.cacheFile(report), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+            channel.read(buffer, MODIFIED_OFFSET);
+            return buffer.flip().getLong();
+        }
+    }
+}